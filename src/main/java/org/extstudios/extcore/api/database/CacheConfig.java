@@ -0,0 +1,63 @@
+package org.extstudios.extcore.api.database;
+
+import java.util.function.ToIntFunction;
+
+public class CacheConfig {
+
+    private long maximumSize = 1000;
+    private long maximumWeight = 0; // 0 = bounded by maximumSize
+    private ToIntFunction<Object> weigher = value -> 1;
+    private long expireAfterWrite = 0; // 0 = never
+    private boolean cacheNegativeResults = true;
+
+    public static CacheConfig defaults() {
+        return new CacheConfig();
+    }
+
+    public long getMaximumSize() {
+        return maximumSize;
+    }
+
+    public long getMaximumWeight() {
+        return maximumWeight;
+    }
+
+    public ToIntFunction<Object> getWeigher() {
+        return weigher;
+    }
+
+    public long getExpireAfterWrite() {
+        return expireAfterWrite;
+    }
+
+    public boolean isCacheNegativeResults() {
+        return cacheNegativeResults;
+    }
+
+    public CacheConfig setMaximumSize(long maximumSize) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("Maximum size must be at least 1");
+        }
+        this.maximumSize = maximumSize;
+        return this;
+    }
+
+    public CacheConfig setMaximumWeight(long maximumWeight, ToIntFunction<Object> weigher) {
+        if (maximumWeight < 1) {
+            throw new IllegalArgumentException("Maximum weight must be at least 1");
+        }
+        this.maximumWeight = maximumWeight;
+        this.weigher = weigher;
+        return this;
+    }
+
+    public CacheConfig setExpireAfterWrite(long expireAfterWrite) {
+        this.expireAfterWrite = expireAfterWrite;
+        return this;
+    }
+
+    public CacheConfig setCacheNegativeResults(boolean cacheNegativeResults) {
+        this.cacheNegativeResults = cacheNegativeResults;
+        return this;
+    }
+}
@@ -0,0 +1,14 @@
+package org.extstudios.extcore.api.database;
+
+public interface CacheStats {
+
+    long getHitCount();
+
+    long getMissCount();
+
+    long getEvictionCount();
+
+    double getHitRate();
+
+    int getSize();
+}
@@ -0,0 +1,21 @@
+package org.extstudios.extcore.api.database;
+
+import java.util.function.Predicate;
+
+/**
+ * Values are cached by reference: the object passed to save and the one returned by
+ * load are the cached instance itself. Treat them as immutable, or invalidate the key
+ * after changing one.
+ */
+public interface CachedDatabase extends Database {
+
+    Database getDelegate();
+
+    void invalidate(String key);
+
+    void invalidateIf(Predicate<String> predicate);
+
+    void invalidateAll();
+
+    CacheStats getCacheStats();
+}
@@ -0,0 +1,8 @@
+package org.extstudios.extcore.api.database;
+
+public enum CircuitState {
+
+    CLOSED,
+    OPEN,
+    HALF_OPEN
+}
@@ -0,0 +1,24 @@
+package org.extstudios.extcore.api.database;
+
+public interface ConnectionPoolStats {
+
+    String getPoolName();
+
+    int getActiveConnections();
+
+    int getIdleConnections();
+
+    int getTotalConnections();
+
+    int getMaxConnections();
+
+    int getPendingThreads();
+
+    long getAcquireCount();
+
+    long getTimeoutCount();
+
+    double getAverageAcquireMillis();
+
+    double getMaxAcquireMillis();
+}
@@ -1,9 +1,13 @@
 package org.extstudios.extcore.api.database;
 
+import java.io.OutputStream;
+import java.nio.file.Path;
 import java.sql.Connection;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 public interface Database {
 
@@ -17,10 +21,46 @@ public interface Database {
 
     Connection getConnection();
 
+    ExecutorStats getExecutorStats();
+
+    DatabaseStats getStats();
+
     CompletableFuture<Integer> executeUpdate(String sql, Object... params);
 
     CompletableFuture<List<Map<String, Object>>> executeQuery(String sql, Object... params);
 
+    <T> CompletableFuture<List<T>> executeQuery(String sql, RowMapper<T> mapper, Object... params);
+
+    CompletableFuture<Long> streamQuery(String sql, Consumer<Map<String, Object>> consumer, Object... params);
+
+    <T> CompletableFuture<Long> streamMapped(String sql, RowMapper<T> mapper, Consumer<? super T> consumer, Object... params);
+
+    // Keyset pagination, orderColumn must be unique and indexed; afterValue null starts at the beginning
+    CompletableFuture<Page> page(String table, String orderColumn, Object afterValue, int limit);
+
+    // Streams the result to the output without buffering it, returns the number of rows written
+    CompletableFuture<Long> exportTo(String sql, OutputStream out, ExportFormat format, Object... params);
+
+    CompletableFuture<Long> exportTo(String sql, Path file, ExportFormat format, Object... params);
+
+    // Per-row update counts; with PerformanceProfile.OPTIMIZED rewritten batches report Statement.SUCCESS_NO_INFO
+    CompletableFuture<int[]> executeBatch(String sql, List<Object[]> params);
+
+    CompletableFuture<int[]> executeBatch(String sql, Iterable<Object[]> params);
+
+    CompletableFuture<Integer> upsertAll(String table, List<String> keyColumns, List<Map<String, Object>> rows);
+
+    PreparedQuery prepare(String name, String sql);
+
+    // Idempotent queries may be retried after transient failures, even when they write
+    PreparedQuery prepare(String name, String sql, boolean idempotent);
+
+    PreparedQuery getPreparedQuery(String name);
+
+    <T> CompletableFuture<T> inTransaction(Function<TransactionContext, T> work);
+
+    <T> CompletableFuture<T> inTransaction(TransactionOptions options, Function<TransactionContext, T> work);
+
     CompletableFuture<Void> save(String key, Object value);
 
     <T> CompletableFuture<T> load(String key, Class<T> type);
@@ -30,4 +70,13 @@ public interface Database {
     CompletableFuture<Void> delete(String key);
 
     CompletableFuture<List<String>> getKeys();
+
+    // Keys starting with prefix, in ascending key order. YAML matches the full dot paths written
+    // by save() here and in scan(), while its getKeys() only lists the top-level sections
+    CompletableFuture<List<String>> getKeys(String prefix);
+
+    // At most limit keys in [from, to) in ascending key order, a null bound is open
+    CompletableFuture<List<String>> scan(String from, String to, int limit);
+
+    CompletableFuture<Void> flush();
 }
\ No newline at end of file
@@ -0,0 +1,10 @@
+package org.extstudios.extcore.api.database;
+
+import java.util.concurrent.RejectedExecutionException;
+
+public class DatabaseOverloadedException extends RejectedExecutionException {
+
+    public DatabaseOverloadedException(String message) {
+        super(message);
+    }
+}
@@ -2,8 +2,8 @@ package org.extstudios.extcore.api.database;
 
 import org.bukkit.plugin.Plugin;
 
-import javax.xml.crypto.Data;
 import java.io.File;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
 public interface DatabaseService {
@@ -12,10 +12,26 @@ public interface DatabaseService {
 
     Database createYAML(File file);
 
+    Database createYAML(Plugin plugin, String fileName, FileDatabaseConfig config);
+
+    Database createYAML(File file, FileDatabaseConfig config);
+
     Database createJSON(Plugin plugin, String fileName);
 
     Database createJSON(File file);
 
+    Database createJSON(Plugin plugin, String fileName, FileDatabaseConfig config);
+
+    Database createJSON(File file, FileDatabaseConfig config);
+
+    Database createBinary(Plugin plugin, String fileName);
+
+    Database createBinary(File file);
+
+    Database createBinary(Plugin plugin, String fileName, FileDatabaseConfig config);
+
+    Database createBinary(File file, FileDatabaseConfig config);
+
     CompletableFuture<Database> createSQL(Plugin plugin, DatabaseType type, SQLConfig config);
 
     CompletableFuture<Database> createMySQL(Plugin plugin, SQLConfig config);
@@ -26,8 +42,12 @@ public interface DatabaseService {
 
     CompletableFuture<Database> createSQLite(Plugin plugin, String fileName, SQLConfig config);
 
+    CachedDatabase createCached(Database database, CacheConfig config);
+
     int getActiveConnectionCount();
 
+    List<DatabaseStats> getStats(Plugin plugin);
+
     CompletableFuture<Void> closeAll(Plugin plugin);
 
 }
\ No newline at end of file
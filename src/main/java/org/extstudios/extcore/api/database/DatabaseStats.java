@@ -0,0 +1,34 @@
+package org.extstudios.extcore.api.database;
+
+import java.util.List;
+import java.util.Map;
+
+public interface DatabaseStats {
+
+    String getName();
+
+    DatabaseType getType();
+
+    ExecutorStats getExecutorStats();
+
+    // Keyed by pool name, empty for file-backed databases
+    Map<String, ConnectionPoolStats> getPoolStats();
+
+    // Keyed by SQL template
+    Map<String, StatementStats> getStatementStats();
+
+    long getExecutionCount();
+
+    long getErrorCount();
+
+    long getRowCount();
+
+    long getRetryCount();
+
+    // Operations that succeeded after at least one retry
+    long getRetrySuccessCount();
+
+    List<SlowQuery> getSlowQueries();
+
+    void reset();
+}
@@ -4,6 +4,7 @@ public enum DatabaseType {
 
     YAML,
     JSON,
+    BINARY,
     MYSQL,
     POSTGRESQL,
     SQLITE
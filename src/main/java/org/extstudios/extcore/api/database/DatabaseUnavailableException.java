@@ -0,0 +1,11 @@
+package org.extstudios.extcore.api.database;
+
+import java.util.concurrent.RejectedExecutionException;
+
+// Thrown while the circuit breaker is open after repeated connection failures
+public class DatabaseUnavailableException extends RejectedExecutionException {
+
+    public DatabaseUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,84 @@
+package org.extstudios.extcore.api.database;
+
+public class ExecutorConfig {
+
+    // 0 = derive from the connection pool size. File databases always use 1 and reject anything higher
+    private int maxConcurrency = 0;
+    // Operations in flight are bounded by max concurrency plus queue capacity
+    private int queueCapacity = 1024;
+    private RejectionPolicy rejectionPolicy = RejectionPolicy.ABORT;
+    private long blockTimeout = 5000;
+
+    // Consecutive connection failures before calls are short-circuited, 0 = disabled
+    private int circuitBreakerThreshold = 5;
+    private long circuitBreakerOpenTime = 5000;
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public RejectionPolicy getRejectionPolicy() {
+        return rejectionPolicy;
+    }
+
+    public long getBlockTimeout() {
+        return blockTimeout;
+    }
+
+    public int getCircuitBreakerThreshold() {
+        return circuitBreakerThreshold;
+    }
+
+    public long getCircuitBreakerOpenTime() {
+        return circuitBreakerOpenTime;
+    }
+
+    public ExecutorConfig setMaxConcurrency(int maxConcurrency) {
+        if (maxConcurrency < 0) {
+            throw new IllegalArgumentException("Max concurrency cannot be negative");
+        }
+        this.maxConcurrency = maxConcurrency;
+        return this;
+    }
+
+    public ExecutorConfig setQueueCapacity(int queueCapacity) {
+        if (queueCapacity < 0) {
+            throw new IllegalArgumentException("Queue capacity cannot be negative");
+        }
+        this.queueCapacity = queueCapacity;
+        return this;
+    }
+
+    public ExecutorConfig setRejectionPolicy(RejectionPolicy rejectionPolicy) {
+        this.rejectionPolicy = rejectionPolicy;
+        return this;
+    }
+
+    public ExecutorConfig setBlockTimeout(long blockTimeout) {
+        if (blockTimeout < 0) {
+            throw new IllegalArgumentException("Block timeout cannot be negative");
+        }
+        this.blockTimeout = blockTimeout;
+        return this;
+    }
+
+    public ExecutorConfig setCircuitBreakerThreshold(int circuitBreakerThreshold) {
+        if (circuitBreakerThreshold < 0) {
+            throw new IllegalArgumentException("Circuit breaker threshold cannot be negative");
+        }
+        this.circuitBreakerThreshold = circuitBreakerThreshold;
+        return this;
+    }
+
+    public ExecutorConfig setCircuitBreakerOpenTime(long circuitBreakerOpenTime) {
+        if (circuitBreakerOpenTime < 0) {
+            throw new IllegalArgumentException("Circuit breaker open time cannot be negative");
+        }
+        this.circuitBreakerOpenTime = circuitBreakerOpenTime;
+        return this;
+    }
+}
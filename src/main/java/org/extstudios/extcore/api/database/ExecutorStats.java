@@ -0,0 +1,24 @@
+package org.extstudios.extcore.api.database;
+
+public interface ExecutorStats {
+
+    int getMaxConcurrency();
+
+    int getActiveCount();
+
+    int getQueueDepth();
+
+    int getQueueCapacity();
+
+    long getCompletedCount();
+
+    long getRejectedCount();
+
+    long getDiscardedCount();
+
+    CircuitState getCircuitState();
+
+    double getAverageWaitMillis();
+
+    double getMaxWaitMillis();
+}
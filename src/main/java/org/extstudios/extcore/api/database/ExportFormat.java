@@ -0,0 +1,9 @@
+package org.extstudios.extcore.api.database;
+
+public enum ExportFormat {
+
+    // RFC 4180, header row first
+    CSV,
+    // One JSON object per row
+    JSON_LINES
+}
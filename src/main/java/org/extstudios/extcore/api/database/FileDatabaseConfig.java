@@ -0,0 +1,194 @@
+package org.extstudios.extcore.api.database;
+
+public class FileDatabaseConfig {
+
+    // Write-behind settings
+    private boolean writeBehind = false;
+    private long flushInterval = 1000; // 1 second
+    private int dirtyThreshold = 100;
+
+    // Durability settings, opt in: fsync forces every persist to disk
+    private boolean fsync = false;
+    // Write-through only: saves within the window share one write and fsync, 0 = disabled
+    private long groupCommitWindow = 0;
+
+    // File stores always run one operation at a time, the queue is unbounded unless limited here
+    private ExecutorConfig executorConfig = new ExecutorConfig().setQueueCapacity(Integer.MAX_VALUE);
+
+    // Log-structured storage settings
+    private StorageMode storageMode = StorageMode.SNAPSHOT;
+    private double compactionRatio = 0.5;
+    private int compactionMinRecords = 1000;
+
+    // JSON only: streams compact JSON and keeps values as parsed trees in memory
+    private boolean compactJson = false;
+
+    // JSON and YAML: GZIP encode data files, reads detect the encoding either way
+    private boolean compressed = false;
+    private int compressionLevel = 6;
+
+    // JSON and YAML: number of bucket files keys are hashed into, 0 = single file
+    private int shards = 0;
+
+    public static FileDatabaseConfig defaults() {
+        return new FileDatabaseConfig();
+    }
+
+    public static FileDatabaseConfig writeBehind(long flushInterval) {
+        return new FileDatabaseConfig()
+                .setWriteBehind(true)
+                .setFlushInterval(flushInterval);
+    }
+
+    public boolean isWriteBehind() {
+        return writeBehind;
+    }
+
+    public long getFlushInterval() {
+        return flushInterval;
+    }
+
+    public int getDirtyThreshold() {
+        return dirtyThreshold;
+    }
+
+    public boolean isFsync() {
+        return fsync;
+    }
+
+    public long getGroupCommitWindow() {
+        return groupCommitWindow;
+    }
+
+    public ExecutorConfig getExecutorConfig() {
+        return executorConfig;
+    }
+
+    public StorageMode getStorageMode() {
+        return storageMode;
+    }
+
+    public double getCompactionRatio() {
+        return compactionRatio;
+    }
+
+    public int getCompactionMinRecords() {
+        return compactionMinRecords;
+    }
+
+    public boolean isCompactJson() {
+        return compactJson;
+    }
+
+    public boolean isCompressed() {
+        return compressed;
+    }
+
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    public int getShards() {
+        return shards;
+    }
+
+    public boolean isSharded() {
+        return shards > 0;
+    }
+
+    public FileDatabaseConfig setWriteBehind(boolean writeBehind) {
+        this.writeBehind = writeBehind;
+        return this;
+    }
+
+    public FileDatabaseConfig setFlushInterval(long flushInterval) {
+        if (flushInterval < 1) {
+            throw new IllegalArgumentException("Flush interval must be at least 1ms");
+        }
+        this.flushInterval = flushInterval;
+        return this;
+    }
+
+    public FileDatabaseConfig setDirtyThreshold(int dirtyThreshold) {
+        if (dirtyThreshold < 1) {
+            throw new IllegalArgumentException("Dirty threshold must be at least 1");
+        }
+        this.dirtyThreshold = dirtyThreshold;
+        return this;
+    }
+
+    public FileDatabaseConfig setFsync(boolean fsync) {
+        this.fsync = fsync;
+        return this;
+    }
+
+    public FileDatabaseConfig setGroupCommitWindow(long groupCommitWindow) {
+        if (groupCommitWindow < 0) {
+            throw new IllegalArgumentException("Group commit window cannot be negative");
+        }
+        this.groupCommitWindow = groupCommitWindow;
+        return this;
+    }
+
+    public FileDatabaseConfig setExecutorConfig(ExecutorConfig executorConfig) {
+        this.executorConfig = executorConfig;
+        return this;
+    }
+
+    public FileDatabaseConfig setStorageMode(StorageMode storageMode) {
+        if (storageMode == StorageMode.LOG && shards > 0) {
+            throw new IllegalArgumentException("LOG storage mode cannot be combined with sharding");
+        }
+        this.storageMode = storageMode;
+        return this;
+    }
+
+    public FileDatabaseConfig setCompactionRatio(double compactionRatio) {
+        if (compactionRatio <= 0 || compactionRatio >= 1) {
+            throw new IllegalArgumentException("Compaction ratio must be between 0 and 1");
+        }
+        this.compactionRatio = compactionRatio;
+        return this;
+    }
+
+    public FileDatabaseConfig setCompactionMinRecords(int compactionMinRecords) {
+        if (compactionMinRecords < 1) {
+            throw new IllegalArgumentException("Compaction min records must be at least 1");
+        }
+        this.compactionMinRecords = compactionMinRecords;
+        return this;
+    }
+
+    public FileDatabaseConfig setCompactJson(boolean compactJson) {
+        this.compactJson = compactJson;
+        return this;
+    }
+
+    public FileDatabaseConfig setCompressed(boolean compressed) {
+        this.compressed = compressed;
+        return this;
+    }
+
+    public FileDatabaseConfig setCompressionLevel(int compressionLevel) {
+        if (compressionLevel < 0 || compressionLevel > 9) {
+            throw new IllegalArgumentException("Compression level must be between 0 and 9");
+        }
+        this.compressionLevel = compressionLevel;
+        return this;
+    }
+
+    /**
+     * Stores the database as this many bucket files in a {@code <name>.shards} directory
+     * next to the file. The count cannot change once data has been written.
+     */
+    public FileDatabaseConfig setShards(int shards) {
+        if (shards < 0) {
+            throw new IllegalArgumentException("Shard count cannot be negative");
+        }
+        if (shards > 0 && storageMode == StorageMode.LOG) {
+            throw new IllegalArgumentException("Sharding cannot be combined with LOG storage mode");
+        }
+        this.shards = shards;
+        return this;
+    }
+}
\ No newline at end of file
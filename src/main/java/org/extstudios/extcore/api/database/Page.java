@@ -0,0 +1,12 @@
+package org.extstudios.extcore.api.database;
+
+import java.util.List;
+import java.util.Map;
+
+// nextCursor is the order column value of the last row, pass it as afterValue for the next page
+public record Page(List<Map<String, Object>> rows, Object nextCursor) {
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+}
@@ -0,0 +1,14 @@
+package org.extstudios.extcore.api.database;
+
+public enum PerformanceProfile {
+
+    // Driver defaults, only explicit data source properties are applied
+    NONE,
+    /**
+     * Dialect-specific throughput settings, opt-in because they change observable behaviour:
+     * batch rewriting makes executeBatch report {@code Statement.SUCCESS_NO_INFO} (-2) instead
+     * of per-row counts on MySQL and PostgreSQL, and SQLite switches the database file to WAL
+     * journaling, which persists and adds -wal and -shm files next to it.
+     */
+    OPTIMIZED
+}
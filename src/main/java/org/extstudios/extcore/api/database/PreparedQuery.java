@@ -0,0 +1,29 @@
+package org.extstudios.extcore.api.database;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+public interface PreparedQuery {
+
+    String getName();
+
+    String getSql();
+
+    boolean isIdempotent();
+
+    CompletableFuture<Integer> executeUpdate(Object... params);
+
+    CompletableFuture<List<Map<String, Object>>> executeQuery(Object... params);
+
+    <T> CompletableFuture<List<T>> executeQuery(RowMapper<T> mapper, Object... params);
+
+    CompletableFuture<int[]> executeBatch(Iterable<Object[]> params);
+
+    long getExecutionCount();
+
+    double getAverageExecutionMillis();
+
+    // Estimated from MySQL server-side prepares, NaN for other databases or when nothing was prepared yet
+    double getStatementCacheHitRate();
+}
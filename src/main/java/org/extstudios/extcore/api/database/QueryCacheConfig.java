@@ -0,0 +1,48 @@
+package org.extstudios.extcore.api.database;
+
+public class QueryCacheConfig {
+
+    private int maxEntries = 500;
+    private long ttl = 10000; // 10 seconds
+    private int maxResultRows = 1000;
+
+    public static QueryCacheConfig defaults() {
+        return new QueryCacheConfig();
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public long getTtl() {
+        return ttl;
+    }
+
+    public int getMaxResultRows() {
+        return maxResultRows;
+    }
+
+    public QueryCacheConfig setMaxEntries(int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("Max entries must be at least 1");
+        }
+        this.maxEntries = maxEntries;
+        return this;
+    }
+
+    public QueryCacheConfig setTtl(long ttl) {
+        if (ttl < 1) {
+            throw new IllegalArgumentException("TTL must be at least 1ms");
+        }
+        this.ttl = ttl;
+        return this;
+    }
+
+    public QueryCacheConfig setMaxResultRows(int maxResultRows) {
+        if (maxResultRows < 0) {
+            throw new IllegalArgumentException("Max result rows cannot be negative");
+        }
+        this.maxResultRows = maxResultRows;
+        return this;
+    }
+}
@@ -0,0 +1,136 @@
+package org.extstudios.extcore.api.database;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.RecordComponent;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+final class RecordRowMapper<R extends Record> implements RowMapper<R> {
+
+    private static final ClassValue<RecordRowMapper<?>> CACHE = new ClassValue<>() {
+        @Override
+        protected RecordRowMapper<?> computeValue(Class<?> type) {
+            return new RecordRowMapper<>(type.asSubclass(Record.class));
+        }
+    };
+
+    private final Class<R> type;
+    private final String[] componentNames;
+    private final Class<?>[] componentTypes;
+    private final MethodHandle constructor;
+
+    private RecordRowMapper(Class<R> type) {
+        this.type = type;
+
+        RecordComponent[] components = type.getRecordComponents();
+        this.componentNames = new String[components.length];
+        this.componentTypes = new Class<?>[components.length];
+        for (int i = 0; i < components.length; i++) {
+            componentNames[i] = components[i].getName();
+            componentTypes[i] = components[i].getType();
+        }
+
+        try {
+            Constructor<R> canonical = type.getDeclaredConstructor(componentTypes);
+            canonical.setAccessible(true);
+            this.constructor = MethodHandles.lookup().unreflectConstructor(canonical)
+                    .asSpreader(Object[].class, components.length)
+                    .asType(MethodType.methodType(Object.class, Object[].class));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Cannot access canonical constructor of " + type.getName(), e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    static <R extends Record> RecordRowMapper<R> of(Class<R> type) {
+        return (RecordRowMapper<R>) CACHE.get(type);
+    }
+
+    @Override
+    public R map(ResultSet rs) throws SQLException {
+        return bind(rs.getMetaData()).map(rs);
+    }
+
+    @Override
+    public RowMapper<R> bind(ResultSetMetaData meta) throws SQLException {
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 1; i <= meta.getColumnCount(); i++) {
+            columns.putIfAbsent(meta.getColumnLabel(i).toLowerCase(Locale.ROOT), i);
+        }
+
+        int[] positions = new int[componentNames.length];
+        for (int i = 0; i < componentNames.length; i++) {
+            Integer position = columns.get(componentNames[i].toLowerCase(Locale.ROOT));
+            if (position == null) {
+                position = columns.get(toSnakeCase(componentNames[i]));
+            }
+            if (position == null) {
+                throw new SQLException("No column for record component " + type.getSimpleName() + "." + componentNames[i]);
+            }
+            positions[i] = position;
+        }
+
+        return rs -> {
+            Object[] args = new Object[positions.length];
+            for (int i = 0; i < positions.length; i++) {
+                args[i] = readColumn(rs, positions[i], componentTypes[i]);
+            }
+            try {
+                Object record = constructor.invokeExact(args);
+                return type.cast(record);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new SQLException("Failed to create " + type.getName(), e);
+            }
+        };
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object readColumn(ResultSet rs, int position, Class<?> target) throws SQLException {
+        if (target.isEnum()) {
+            String name = rs.getString(position);
+            return name == null ? null : Enum.valueOf((Class<? extends Enum>) target, name);
+        }
+
+        if (!target.isPrimitive()) {
+            return target == Object.class ? rs.getObject(position) : rs.getObject(position, target);
+        }
+
+        if (target == int.class) return rs.getInt(position);
+        if (target == long.class) return rs.getLong(position);
+        if (target == double.class) return rs.getDouble(position);
+        if (target == float.class) return rs.getFloat(position);
+        if (target == boolean.class) return rs.getBoolean(position);
+        if (target == short.class) return rs.getShort(position);
+        if (target == byte.class) return rs.getByte(position);
+        if (target == char.class) {
+            String value = rs.getString(position);
+            return value == null || value.isEmpty() ? '\0' : value.charAt(0);
+        }
+        throw new SQLException("Unsupported record component type: " + target.getName());
+    }
+
+    private static String toSnakeCase(String name) {
+        StringBuilder builder = new StringBuilder(name.length() + 4);
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (Character.isUpperCase(c)) {
+                if (i > 0) {
+                    builder.append('_');
+                }
+                builder.append(Character.toLowerCase(c));
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,13 @@
+package org.extstudios.extcore.api.database;
+
+public enum RejectionPolicy {
+
+    // Fail the new operation with a DatabaseOverloadedException
+    ABORT,
+    // Run the operation on the submitting thread, ABORT when submitted from the main thread
+    CALLER_RUNS,
+    // Wait up to ExecutorConfig.blockTimeout for queue space, ABORT when submitted from the main thread
+    BLOCK,
+    // Fail the oldest queued operation to make room for the new one
+    DISCARD_OLDEST
+}
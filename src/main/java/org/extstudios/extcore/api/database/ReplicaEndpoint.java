@@ -0,0 +1,4 @@
+package org.extstudios.extcore.api.database;
+
+public record ReplicaEndpoint(String host, int port) {
+}
@@ -0,0 +1,8 @@
+package org.extstudios.extcore.api.database;
+
+public enum ReplicaRouting {
+
+    ROUND_ROBIN,
+    // Replica pool with the fewest active and waiting connections
+    LEAST_BUSY
+}
@@ -0,0 +1,80 @@
+package org.extstudios.extcore.api.database;
+
+public class RetryPolicy {
+
+    // 1 = no retries
+    private int maxAttempts = 3;
+    private long initialBackoff = 50;
+    private long maxBackoff = 2000;
+    private double multiplier = 2.0;
+    // Total time budget across all attempts, no retry is started past it
+    private long deadline = 10000;
+
+    public static RetryPolicy defaults() {
+        return new RetryPolicy();
+    }
+
+    public static RetryPolicy disabled() {
+        return new RetryPolicy().setMaxAttempts(1);
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public long getInitialBackoff() {
+        return initialBackoff;
+    }
+
+    public long getMaxBackoff() {
+        return maxBackoff;
+    }
+
+    public double getMultiplier() {
+        return multiplier;
+    }
+
+    public long getDeadline() {
+        return deadline;
+    }
+
+    public RetryPolicy setMaxAttempts(int maxAttempts) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("Max attempts must be at least 1");
+        }
+        this.maxAttempts = maxAttempts;
+        return this;
+    }
+
+    public RetryPolicy setInitialBackoff(long initialBackoff) {
+        if (initialBackoff < 0) {
+            throw new IllegalArgumentException("Initial backoff cannot be negative");
+        }
+        this.initialBackoff = initialBackoff;
+        return this;
+    }
+
+    public RetryPolicy setMaxBackoff(long maxBackoff) {
+        if (maxBackoff < 0) {
+            throw new IllegalArgumentException("Max backoff cannot be negative");
+        }
+        this.maxBackoff = maxBackoff;
+        return this;
+    }
+
+    public RetryPolicy setMultiplier(double multiplier) {
+        if (multiplier < 1) {
+            throw new IllegalArgumentException("Multiplier must be at least 1");
+        }
+        this.multiplier = multiplier;
+        return this;
+    }
+
+    public RetryPolicy setDeadline(long deadline) {
+        if (deadline < 0) {
+            throw new IllegalArgumentException("Deadline cannot be negative");
+        }
+        this.deadline = deadline;
+        return this;
+    }
+}
@@ -0,0 +1,24 @@
+package org.extstudios.extcore.api.database;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+@FunctionalInterface
+public interface RowMapper<T> {
+
+    T map(ResultSet rs) throws SQLException;
+
+    /**
+     * Called once per result set before any row is mapped. Mappers that resolve
+     * columns by name can look them up here and return a mapper bound to the
+     * column positions instead of resolving them again for every row.
+     */
+    default RowMapper<T> bind(ResultSetMetaData meta) throws SQLException {
+        return this;
+    }
+
+    static <R extends Record> RowMapper<R> forRecord(Class<R> type) {
+        return RecordRowMapper.of(type);
+    }
+}
@@ -1,5 +1,11 @@
 package org.extstudios.extcore.api.database;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 public class SQLConfig {
 
     private final String host;
@@ -16,6 +22,38 @@ public class SQLConfig {
     private long maxLifetime = 1800000; // 30 minutes
     private boolean autoCommit = true;
 
+    private int batchSize = 500;
+    private int fetchSize = 1000;
+    private IsolationLevel defaultIsolation = null;
+    private int statementCacheSize = 250;
+    private long slowQueryThreshold = 500; // 0 = slow query log disabled
+    private RetryPolicy retryPolicy = RetryPolicy.defaults();
+
+    // Driver tuning, explicit properties override the profile defaults
+    private PerformanceProfile performanceProfile = PerformanceProfile.NONE;
+    private final Map<String, String> dataSourceProperties = new LinkedHashMap<>();
+
+    private ExecutorConfig executorConfig = new ExecutorConfig();
+
+    // MySQL/PostgreSQL read replicas, each gets its own pool with the primary's settings
+    private final List<ReplicaEndpoint> replicas = new ArrayList<>();
+    private ReplicaRouting replicaRouting = ReplicaRouting.ROUND_ROBIN;
+    // ms after a write during which reads of the written tables or keys go to the primary, 0 = never pinned
+    private long readYourWritesWindow = 0;
+
+    // SQLite only: 0 = one shared pool, otherwise a single writer plus this many readers
+    private int readPoolSize = 0;
+    private boolean groupCommit = false;
+    private int groupCommitSize = 64;
+
+    // Key-value table settings
+    private String keyValueTable = "extcore_kv";
+    private int keyValueCacheSize = 256;
+    private long keyValueCacheTtl = 5000; // 5 seconds
+
+    // null = query result cache disabled
+    private QueryCacheConfig queryCache = null;
+
     public SQLConfig(String host, int port, String database, String username, String password) {
         this.host = host;
         this.port = port;
@@ -24,10 +62,45 @@ public class SQLConfig {
         this.password = password;
     }
 
+    // Copies every setting, so fields added later cannot be dropped by callers copying them one by one
+    private SQLConfig(SQLConfig source, String host, int port, String database, String username, String password) {
+        this(host, port, database, username, password);
+        this.minimumIdle = source.minimumIdle;
+        this.maximumPoolSize = source.maximumPoolSize;
+        this.connectionTimeout = source.connectionTimeout;
+        this.idleTimeout = source.idleTimeout;
+        this.maxLifetime = source.maxLifetime;
+        this.autoCommit = source.autoCommit;
+        this.batchSize = source.batchSize;
+        this.fetchSize = source.fetchSize;
+        this.defaultIsolation = source.defaultIsolation;
+        this.statementCacheSize = source.statementCacheSize;
+        this.slowQueryThreshold = source.slowQueryThreshold;
+        this.retryPolicy = source.retryPolicy;
+        this.performanceProfile = source.performanceProfile;
+        this.dataSourceProperties.putAll(source.dataSourceProperties);
+        this.executorConfig = source.executorConfig;
+        this.replicas.addAll(source.replicas);
+        this.replicaRouting = source.replicaRouting;
+        this.readYourWritesWindow = source.readYourWritesWindow;
+        this.readPoolSize = source.readPoolSize;
+        this.groupCommit = source.groupCommit;
+        this.groupCommitSize = source.groupCommitSize;
+        this.keyValueTable = source.keyValueTable;
+        this.keyValueCacheSize = source.keyValueCacheSize;
+        this.keyValueCacheTtl = source.keyValueCacheTtl;
+        this.queryCache = source.queryCache;
+    }
+
     public static SQLConfig sqlite(String filePath) {
         return new SQLConfig("", 0, filePath, "", "");
     }
 
+    // These settings for the SQLite file at filePath
+    public SQLConfig toSqlite(String filePath) {
+        return new SQLConfig(this, "", 0, filePath, "", "");
+    }
+
     public static SQLConfig mysql(String host, int port, String database, String username, String password) {
         return new SQLConfig(host, port, database, username, password);
     }
@@ -80,6 +153,82 @@ public class SQLConfig {
         return autoCommit;
     }
 
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    public int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+
+    public long getSlowQueryThreshold() {
+        return slowQueryThreshold;
+    }
+
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    public PerformanceProfile getPerformanceProfile() {
+        return performanceProfile;
+    }
+
+    public Map<String, String> getDataSourceProperties() {
+        return Collections.unmodifiableMap(dataSourceProperties);
+    }
+
+    public IsolationLevel getDefaultIsolation() {
+        return defaultIsolation;
+    }
+
+    public ExecutorConfig getExecutorConfig() {
+        return executorConfig;
+    }
+
+    public List<ReplicaEndpoint> getReplicas() {
+        return Collections.unmodifiableList(replicas);
+    }
+
+    public ReplicaRouting getReplicaRouting() {
+        return replicaRouting;
+    }
+
+    public long getReadYourWritesWindow() {
+        return readYourWritesWindow;
+    }
+
+    public int getReadPoolSize() {
+        return readPoolSize;
+    }
+
+    public boolean isGroupCommit() {
+        return groupCommit;
+    }
+
+    public int getGroupCommitSize() {
+        return groupCommitSize;
+    }
+
+    public String getKeyValueTable() {
+        return keyValueTable;
+    }
+
+    public int getKeyValueCacheSize() {
+        return keyValueCacheSize;
+    }
+
+    public long getKeyValueCacheTtl() {
+        return keyValueCacheTtl;
+    }
+
+    public QueryCacheConfig getQueryCache() {
+        return queryCache;
+    }
+
     public SQLConfig setMinimumIdle(int minimumIdle) {
         this.minimumIdle = minimumIdle;
         return this;
@@ -109,4 +258,125 @@ public class SQLConfig {
         this.autoCommit = autoCommit;
         return this;
     }
+
+    public SQLConfig setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1");
+        }
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    public SQLConfig setFetchSize(int fetchSize) {
+        if (fetchSize < 1) {
+            throw new IllegalArgumentException("Fetch size must be at least 1");
+        }
+        this.fetchSize = fetchSize;
+        return this;
+    }
+
+    public SQLConfig setStatementCacheSize(int statementCacheSize) {
+        if (statementCacheSize < 0) {
+            throw new IllegalArgumentException("Statement cache size cannot be negative");
+        }
+        this.statementCacheSize = statementCacheSize;
+        return this;
+    }
+
+    public SQLConfig setSlowQueryThreshold(long slowQueryThreshold) {
+        this.slowQueryThreshold = slowQueryThreshold;
+        return this;
+    }
+
+    public SQLConfig setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+        return this;
+    }
+
+    public SQLConfig setPerformanceProfile(PerformanceProfile performanceProfile) {
+        this.performanceProfile = performanceProfile;
+        return this;
+    }
+
+    public SQLConfig setDataSourceProperty(String key, String value) {
+        dataSourceProperties.put(key, value);
+        return this;
+    }
+
+    public SQLConfig setDataSourceProperties(Map<String, String> properties) {
+        dataSourceProperties.putAll(properties);
+        return this;
+    }
+
+    public SQLConfig setDefaultIsolation(IsolationLevel defaultIsolation) {
+        this.defaultIsolation = defaultIsolation;
+        return this;
+    }
+
+    public SQLConfig setExecutorConfig(ExecutorConfig executorConfig) {
+        this.executorConfig = executorConfig;
+        return this;
+    }
+
+    public SQLConfig addReplica(String host, int port) {
+        replicas.add(new ReplicaEndpoint(host, port));
+        return this;
+    }
+
+    public SQLConfig setReplicaRouting(ReplicaRouting replicaRouting) {
+        this.replicaRouting = replicaRouting;
+        return this;
+    }
+
+    public SQLConfig setReadYourWritesWindow(long readYourWritesWindow) {
+        if (readYourWritesWindow < 0) {
+            throw new IllegalArgumentException("Read-your-writes window cannot be negative");
+        }
+        this.readYourWritesWindow = readYourWritesWindow;
+        return this;
+    }
+
+    public SQLConfig setReadPoolSize(int readPoolSize) {
+        if (readPoolSize < 0) {
+            throw new IllegalArgumentException("Read pool size cannot be negative");
+        }
+        this.readPoolSize = readPoolSize;
+        return this;
+    }
+
+    public SQLConfig setGroupCommit(boolean groupCommit) {
+        this.groupCommit = groupCommit;
+        return this;
+    }
+
+    public SQLConfig setGroupCommitSize(int groupCommitSize) {
+        if (groupCommitSize < 1) {
+            throw new IllegalArgumentException("Group commit size must be at least 1");
+        }
+        this.groupCommitSize = groupCommitSize;
+        return this;
+    }
+
+    public SQLConfig setKeyValueTable(String keyValueTable) {
+        this.keyValueTable = keyValueTable;
+        return this;
+    }
+
+    public SQLConfig setKeyValueCacheSize(int keyValueCacheSize) {
+        if (keyValueCacheSize < 0) {
+            throw new IllegalArgumentException("Key-value cache size cannot be negative");
+        }
+        this.keyValueCacheSize = keyValueCacheSize;
+        return this;
+    }
+
+    public SQLConfig setKeyValueCacheTtl(long keyValueCacheTtl) {
+        this.keyValueCacheTtl = keyValueCacheTtl;
+        return this;
+    }
+
+    public SQLConfig setQueryCache(QueryCacheConfig queryCache) {
+        this.queryCache = queryCache;
+        return this;
+    }
 }
\ No newline at end of file
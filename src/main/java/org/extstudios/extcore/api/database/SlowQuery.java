@@ -0,0 +1,4 @@
+package org.extstudios.extcore.api.database;
+
+public record SlowQuery(String sql, double durationMillis, long rows, long timestamp) {
+}
@@ -0,0 +1,23 @@
+package org.extstudios.extcore.api.database;
+
+public interface StatementStats {
+
+    String getSql();
+
+    long getExecutionCount();
+
+    long getErrorCount();
+
+    long getRowCount();
+
+    double getAverageMillis();
+
+    double getMaxMillis();
+
+    double getPercentileMillis(double percentile);
+
+    // Upper bound of each histogram bucket in milliseconds, the last bucket is unbounded
+    double[] getBucketBoundsMillis();
+
+    long[] getHistogram();
+}
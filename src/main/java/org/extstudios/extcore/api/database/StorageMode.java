@@ -0,0 +1,7 @@
+package org.extstudios.extcore.api.database;
+
+public enum StorageMode {
+
+    SNAPSHOT,
+    LOG
+}
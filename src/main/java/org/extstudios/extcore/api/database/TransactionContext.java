@@ -0,0 +1,31 @@
+package org.extstudios.extcore.api.database;
+
+import java.sql.Connection;
+import java.sql.Savepoint;
+import java.util.List;
+import java.util.Map;
+
+public interface TransactionContext {
+
+    int executeUpdate(String sql, Object... params);
+
+    List<Map<String, Object>> executeQuery(String sql, Object... params);
+
+    <T> List<T> executeQuery(String sql, RowMapper<T> mapper, Object... params);
+
+    int[] executeBatch(String sql, Iterable<Object[]> params);
+
+    Savepoint setSavepoint();
+
+    Savepoint setSavepoint(String name);
+
+    void rollbackTo(Savepoint savepoint);
+
+    void releaseSavepoint(Savepoint savepoint);
+
+    void setRollbackOnly();
+
+    boolean isRollbackOnly();
+
+    Connection getConnection();
+}
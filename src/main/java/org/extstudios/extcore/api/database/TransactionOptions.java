@@ -0,0 +1,45 @@
+package org.extstudios.extcore.api.database;
+
+public class TransactionOptions {
+
+    // null = use SQLConfig default isolation
+    private IsolationLevel isolation;
+    private boolean readOnly = false;
+    // The whole unit of work may be re-run after a transient failure
+    private boolean retryable = false;
+
+    public static TransactionOptions defaults() {
+        return new TransactionOptions();
+    }
+
+    public static TransactionOptions isolation(IsolationLevel isolation) {
+        return new TransactionOptions().setIsolation(isolation);
+    }
+
+    public IsolationLevel getIsolation() {
+        return isolation;
+    }
+
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    public boolean isRetryable() {
+        return retryable;
+    }
+
+    public TransactionOptions setIsolation(IsolationLevel isolation) {
+        this.isolation = isolation;
+        return this;
+    }
+
+    public TransactionOptions setReadOnly(boolean readOnly) {
+        this.readOnly = readOnly;
+        return this;
+    }
+
+    public TransactionOptions setRetryable(boolean retryable) {
+        this.retryable = retryable;
+        return this;
+    }
+}
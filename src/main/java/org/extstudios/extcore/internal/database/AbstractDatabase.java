@@ -2,27 +2,50 @@ package org.extstudios.extcore.internal.database;
 
 import org.bukkit.plugin.Plugin;
 import org.extstudios.extcore.api.database.Database;
+import org.extstudios.extcore.api.database.DatabaseStats;
+import org.extstudios.extcore.api.database.DatabaseType;
+import org.extstudios.extcore.api.database.DatabaseUnavailableException;
+import org.extstudios.extcore.api.database.ExecutorStats;
+import org.extstudios.extcore.api.database.ExportFormat;
+import org.extstudios.extcore.api.database.Page;
+import org.extstudios.extcore.api.database.PreparedQuery;
+import org.extstudios.extcore.api.database.RowMapper;
+import org.extstudios.extcore.api.database.TransactionContext;
+import org.extstudios.extcore.api.database.TransactionOptions;
 import org.extstudios.extcore.api.LoggingService;
 import org.extstudios.extcore.api.task.TaskService;
 import org.extstudios.extcore.internal.Platform;
 
+import java.io.OutputStream;
+import java.nio.file.Path;
 import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLTransientConnectionException;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 public abstract class AbstractDatabase implements Database {
 
     protected final Plugin plugin;
     protected final LoggingService logger;
     protected final TaskService taskService;
+    protected final DatabaseExecutor executor;
+    protected final DatabaseMetrics metrics;
     protected volatile boolean connected;
 
-    public AbstractDatabase(Plugin plugin, LoggingService logger, TaskService taskService) {
+    public AbstractDatabase(Plugin plugin, DatabaseType type, LoggingService logger, TaskService taskService,
+                            DatabaseExecutor executor) {
         this.plugin = plugin;
         this.logger = logger;
         this.taskService = taskService;
+        this.executor = executor;
+        this.metrics = new DatabaseMetrics(type, executor, logger);
         this.connected = false;
     }
 
@@ -36,21 +59,81 @@ public abstract class AbstractDatabase implements Database {
         return null;
     }
 
+    @Override
+    public ExecutorStats getExecutorStats() {
+        return executor;
+    }
+
+    @Override
+    public DatabaseStats getStats() {
+        return metrics;
+    }
+
     protected <T> CompletableFuture<T> executeAsync(Callable<T> task) {
+        return executeAsync(task, true);
+    }
+
+    // connect and disconnect skip the breaker, pools must still close while it is open
+    protected CompletableFuture<Void> executeLifecycle(Runnable task) {
+        return executeAsync(() -> {
+            task.run();
+            return null;
+        }, false);
+    }
+
+    private <T> CompletableFuture<T> executeAsync(Callable<T> task, boolean guarded) {
         CompletableFuture<T> future = new CompletableFuture<>();
+        CircuitBreaker circuitBreaker = executor.getCircuitBreaker();
 
-        taskService.runAsync(plugin, () -> {
-            try {
-                future.complete(task.call());
-            } catch (Exception e) {
-                future.completeExceptionally(e);
-                logger.error(e, "Database operation failed");
-            }
-        });
+        if (guarded && !circuitBreaker.tryAcquire()) {
+            future.completeExceptionally(new DatabaseUnavailableException(
+                    "Database " + executor.getName() + " is unavailable after repeated connection failures"));
+            return future;
+        }
+
+        try {
+            executor.execute(() -> {
+                try {
+                    T result = task.call();
+                    if (guarded && circuitBreaker.onSuccess()) {
+                        logger.info("Database", executor.getName(), "recovered, circuit closed");
+                    }
+                    future.complete(result);
+                } catch (Exception e) {
+                    if (guarded && !isConnectionFailure(e)) {
+                        // The database answered, only the operation itself failed
+                        if (circuitBreaker.onSuccess()) {
+                            logger.info("Database", executor.getName(), "recovered, circuit closed");
+                        }
+                    } else if (guarded && circuitBreaker.onFailure()) {
+                        logger.warn("Database", executor.getName(), "circuit opened after repeated connection failures");
+                    }
+                    future.completeExceptionally(e);
+                    logger.error(e, "Database operation failed");
+                }
+            }, future::completeExceptionally);
+        } catch (RejectedExecutionException e) {
+            logger.debug("Rejected database operation:", e.getMessage());
+            future.completeExceptionally(e);
+        }
 
         return future;
     }
 
+    // Failures to reach the database at all, as opposed to errors in the statement itself
+    protected boolean isConnectionFailure(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLTransientConnectionException || cause instanceof SQLNonTransientConnectionException) {
+                return true;
+            }
+            if (cause instanceof SQLException sqlException && sqlException.getSQLState() != null
+                    && sqlException.getSQLState().startsWith("08")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     protected CompletableFuture<Void> executeAsyncVoid(Runnable task) {
         return executeAsync(() -> {
             task.run();
@@ -72,6 +155,95 @@ public abstract class AbstractDatabase implements Database {
         );
     }
 
+    @Override
+    public <T> CompletableFuture<List<T>> executeQuery(String sql, RowMapper<T> mapper, Object... params) {
+        return CompletableFuture.failedFuture(
+                new UnsupportedOperationException("SQL operations not supported for " + getType())
+        );
+    }
+
+    @Override
+    public CompletableFuture<Long> streamQuery(String sql, Consumer<Map<String, Object>> consumer, Object... params) {
+        return CompletableFuture.failedFuture(
+                new UnsupportedOperationException("SQL operations not supported for " + getType())
+        );
+    }
+
+    @Override
+    public <T> CompletableFuture<Long> streamMapped(String sql, RowMapper<T> mapper, Consumer<? super T> consumer,
+                                                    Object... params) {
+        return CompletableFuture.failedFuture(
+                new UnsupportedOperationException("SQL operations not supported for " + getType())
+        );
+    }
+
+    @Override
+    public CompletableFuture<int[]> executeBatch(String sql, List<Object[]> params) {
+        return executeBatch(sql, (Iterable<Object[]>) params);
+    }
+
+    @Override
+    public CompletableFuture<int[]> executeBatch(String sql, Iterable<Object[]> params) {
+        return CompletableFuture.failedFuture(
+                new UnsupportedOperationException("SQL operations not supported for " + getType())
+        );
+    }
+
+    @Override
+    public CompletableFuture<Page> page(String table, String orderColumn, Object afterValue, int limit) {
+        return CompletableFuture.failedFuture(
+                new UnsupportedOperationException("SQL operations not supported for " + getType())
+        );
+    }
+
+    @Override
+    public CompletableFuture<Long> exportTo(String sql, OutputStream out, ExportFormat format, Object... params) {
+        return CompletableFuture.failedFuture(
+                new UnsupportedOperationException("SQL operations not supported for " + getType())
+        );
+    }
+
+    @Override
+    public CompletableFuture<Long> exportTo(String sql, Path file, ExportFormat format, Object... params) {
+        return CompletableFuture.failedFuture(
+                new UnsupportedOperationException("SQL operations not supported for " + getType())
+        );
+    }
+
+    @Override
+    public CompletableFuture<Integer> upsertAll(String table, List<String> keyColumns, List<Map<String, Object>> rows) {
+        return CompletableFuture.failedFuture(
+                new UnsupportedOperationException("SQL operations not supported for " + getType())
+        );
+    }
+
+    @Override
+    public PreparedQuery prepare(String name, String sql) {
+        return prepare(name, sql, false);
+    }
+
+    @Override
+    public PreparedQuery prepare(String name, String sql, boolean idempotent) {
+        throw new UnsupportedOperationException("SQL operations not supported for " + getType());
+    }
+
+    @Override
+    public PreparedQuery getPreparedQuery(String name) {
+        return null;
+    }
+
+    @Override
+    public <T> CompletableFuture<T> inTransaction(Function<TransactionContext, T> work) {
+        return inTransaction(TransactionOptions.defaults(), work);
+    }
+
+    @Override
+    public <T> CompletableFuture<T> inTransaction(TransactionOptions options, Function<TransactionContext, T> work) {
+        return CompletableFuture.failedFuture(
+                new UnsupportedOperationException("SQL operations not supported for " + getType())
+        );
+    }
+
     @Override
     public CompletableFuture<Void> save(String key, Object value) {
         return CompletableFuture.failedFuture(
@@ -106,4 +278,23 @@ public abstract class AbstractDatabase implements Database {
                 new UnsupportedOperationException("Key-value operations not supported for " + getType())
         );
     }
+
+    @Override
+    public CompletableFuture<List<String>> getKeys(String prefix) {
+        return CompletableFuture.failedFuture(
+                new UnsupportedOperationException("Key-value operations not supported for " + getType())
+        );
+    }
+
+    @Override
+    public CompletableFuture<List<String>> scan(String from, String to, int limit) {
+        return CompletableFuture.failedFuture(
+                new UnsupportedOperationException("Key-value operations not supported for " + getType())
+        );
+    }
+
+    @Override
+    public CompletableFuture<Void> flush() {
+        return CompletableFuture.completedFuture(null);
+    }
 }
\ No newline at end of file
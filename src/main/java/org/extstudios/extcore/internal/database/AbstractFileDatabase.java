@@ -0,0 +1,277 @@
+package org.extstudios.extcore.internal.database;
+
+import org.bukkit.plugin.Plugin;
+import org.extstudios.extcore.api.LoggingService;
+import org.extstudios.extcore.api.database.DatabaseType;
+import org.extstudios.extcore.api.database.FileDatabaseConfig;
+import org.extstudios.extcore.api.task.TaskService;
+
+import java.io.File;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Base for the single-file key-value stores. All state is confined to the
+ * database executor, which runs file databases with a concurrency of one.
+ */
+public abstract class AbstractFileDatabase extends AbstractDatabase {
+
+    protected final File file;
+    protected final FileDatabaseConfig config;
+
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private int dirtyCount;
+    // Completed by the next persist, shared by every mutation in the group commit window.
+    // Atomic because a rejected flush fails it from outside the executor
+    private final AtomicReference<CompletableFuture<Void>> pendingCommit = new AtomicReference<>();
+    // Sorted keys for prefix and range lookups, built on first use and kept current afterwards
+    private ConcurrentSkipListSet<String> keyIndex;
+
+    protected AbstractFileDatabase(Plugin plugin, DatabaseType type, File file, FileDatabaseConfig config,
+                                   LoggingService logger, TaskService taskService, DatabaseExecutor executor) {
+        super(plugin, type, logger, taskService, executor);
+        this.file = file;
+        this.config = config;
+    }
+
+    protected abstract void writeToFile() throws IOException;
+
+    // Every stored key, read once to seed the sorted index
+    protected abstract Collection<String> indexKeys() throws IOException;
+
+    @Override
+    public CompletableFuture<List<String>> getKeys(String prefix) {
+        return executeAsync(() -> {
+            if (!connected) {
+                throw new IllegalStateException("Not connected to database");
+            }
+            List<String> keys = new ArrayList<>();
+            for (String key : keyIndex().tailSet(prefix)) {
+                if (!key.startsWith(prefix)) {
+                    break;
+                }
+                keys.add(key);
+            }
+            return keys;
+        });
+    }
+
+    @Override
+    public CompletableFuture<List<String>> scan(String from, String to, int limit) {
+        if (limit < 1) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Scan limit must be at least 1"));
+        }
+
+        return executeAsync(() -> {
+            if (!connected) {
+                throw new IllegalStateException("Not connected to database");
+            }
+            NavigableSet<String> range = keyIndex();
+            if (from != null) {
+                range = range.tailSet(from, true);
+            }
+            if (to != null) {
+                range = range.headSet(to, false);
+            }
+
+            List<String> keys = new ArrayList<>(Math.min(limit, 64));
+            for (String key : range) {
+                if (keys.size() == limit) {
+                    break;
+                }
+                keys.add(key);
+            }
+            return keys;
+        });
+    }
+
+    protected void indexAdd(String key) {
+        if (keyIndex != null) {
+            keyIndex.add(key);
+        }
+    }
+
+    protected void indexRemove(String key) {
+        if (keyIndex != null) {
+            keyIndex.remove(key);
+        }
+    }
+
+    protected void indexRemovePrefix(String prefix) {
+        if (keyIndex != null) {
+            Iterator<String> keys = keyIndex.tailSet(prefix).iterator();
+            while (keys.hasNext() && keys.next().startsWith(prefix)) {
+                keys.remove();
+            }
+        }
+    }
+
+    protected void dropIndex() {
+        keyIndex = null;
+    }
+
+    private NavigableSet<String> keyIndex() throws IOException {
+        if (keyIndex == null) {
+            keyIndex = new ConcurrentSkipListSet<>(indexKeys());
+        }
+        return keyIndex;
+    }
+
+    /**
+     * Records a mutation and returns a future that completes once it is on disk. With
+     * write-behind the future is already complete since durability is traded away.
+     */
+    protected CompletableFuture<Void> markDirty() {
+        dirtyCount++;
+
+        if (config.isWriteBehind()) {
+            if (dirtyCount >= config.getDirtyThreshold()) {
+                persist();
+            } else {
+                scheduleFlush(config.getFlushInterval());
+            }
+            return CompletableFuture.completedFuture(null);
+        }
+
+        if (config.getGroupCommitWindow() <= 0) {
+            persist();
+            return CompletableFuture.completedFuture(null);
+        }
+
+        CompletableFuture<Void> commit = pendingCommit.updateAndGet(
+                pending -> pending != null ? pending : new CompletableFuture<>());
+        if (dirtyCount >= config.getDirtyThreshold()) {
+            persist();
+        } else {
+            scheduleFlush(config.getGroupCommitWindow());
+        }
+        return commit;
+    }
+
+    // Mutations complete with their commit rather than when the executor task ends
+    protected static CompletableFuture<Void> durable(CompletableFuture<CompletableFuture<Void>> mutation) {
+        return mutation.thenCompose(commit -> commit);
+    }
+
+    private void scheduleFlush(long delay) {
+        if (flushScheduled.compareAndSet(false, true)) {
+            CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS).execute(() -> {
+                flushScheduled.set(false);
+                // Unguarded, so an open breaker cannot hold back the flush the pending commit waits for
+                executeLifecycle(() -> {
+                    if (connected && dirtyCount > 0) {
+                        persist();
+                    }
+                }).exceptionally(error -> {
+                    // A failed persist already failed its commit and rescheduled itself
+                    if (error instanceof RejectedExecutionException) {
+                        CompletableFuture<Void> commit = pendingCommit.getAndSet(null);
+                        if (commit != null) {
+                            commit.completeExceptionally(error);
+                        }
+                        scheduleFlush(config.getFlushInterval());
+                    }
+                    return null;
+                });
+            });
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> flush() {
+        return executeAsyncVoid(() -> {
+            if (connected && dirtyCount > 0) {
+                persist();
+            }
+        });
+    }
+
+    protected void persist() {
+        CompletableFuture<Void> commit = pendingCommit.getAndSet(null);
+
+        try {
+            writeToFile();
+            dirtyCount = 0;
+            if (commit != null) {
+                commit.complete(null);
+            }
+        } catch (IOException e) {
+            logger.error(e, "Failed to save", getType().name(), "data to", file.getName());
+            RuntimeException failure = new RuntimeException(e);
+            if (commit != null) {
+                commit.completeExceptionally(failure);
+            }
+            // Still dirty, retry even if no further mutation comes along
+            if (connected) {
+                scheduleFlush(config.getFlushInterval());
+            }
+            throw failure;
+        }
+    }
+
+    /**
+     * Atomically replaces a data file, GZIP encoded when compression is enabled.
+     */
+    protected void writeData(Path path, boolean fsync, DataWriter content) throws IOException {
+        long start = System.nanoTime();
+        AtomicFileWriter.write(path, fsync, channel -> {
+            // Neither stream is closed, AtomicFileWriter still has to force the channel
+            OutputStream out = Channels.newOutputStream(channel);
+            if (config.isCompressed()) {
+                GZIPOutputStream gzip = FileCompression.encode(out, config.getCompressionLevel());
+                content.write(gzip);
+                gzip.finish();
+            } else {
+                BufferedOutputStream buffered = new BufferedOutputStream(out, FileCompression.BUFFER_SIZE);
+                content.write(buffered);
+                buffered.flush();
+            }
+        });
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("Wrote", path.getFileName(), "-", Files.size(path), "bytes in",
+                    (System.nanoTime() - start) / 1_000_000, "ms",
+                    config.isCompressed() ? "(gzip level " + config.getCompressionLevel() + ")" : "(plain)");
+        }
+    }
+
+    protected InputStream readData(Path path) throws IOException {
+        return FileCompression.decode(Files.newInputStream(path));
+    }
+
+    protected Path shardDirectory() {
+        return file.toPath().resolveSibling(file.getName() + ".shards");
+    }
+
+    protected void prepareFile() throws IOException {
+        if (!file.exists()) {
+            File parent = file.getParentFile();
+            if (parent != null && !parent.exists()) {
+                parent.mkdirs();
+            }
+            file.createNewFile();
+        }
+    }
+
+    @FunctionalInterface
+    protected interface DataWriter {
+        void write(OutputStream out) throws IOException;
+    }
+}
@@ -0,0 +1,616 @@
+package org.extstudios.extcore.internal.database;
+
+import com.google.gson.Gson;
+import org.bukkit.plugin.Plugin;
+import org.extstudios.extcore.api.database.DatabaseType;
+import org.extstudios.extcore.api.database.FileDatabaseConfig;
+import org.extstudios.extcore.api.LoggingService;
+import org.extstudios.extcore.api.task.TaskService;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Key-value store backed by two memory-mapped files.
+ *
+ * <p>The data file is an append-only sequence of records
+ * {@code [int keyLength][int valueLength][key][value]}; a value length of -1 marks a
+ * delete. The index file is an open-addressing hash table of 16 byte slots
+ * {@code [long offset][int hash][int recordLength]} pointing into the data file.
+ * Reads go straight from the mapped buffers, writes append to the data file and
+ * update one slot. If the index is missing or damaged it is rebuilt from the data file.
+ * Compaction first copies the live records to a side file, so an interrupted compaction
+ * is finished on the next open.
+ */
+public class BinaryDatabase extends AbstractFileDatabase {
+
+    private static final int DATA_MAGIC = 0x45585442; // EXTB
+    private static final int INDEX_MAGIC = 0x45585449; // EXTI
+    private static final int VERSION = 1;
+
+    private static final int DATA_HEADER = 16;
+    private static final int RECORD_HEADER = 8;
+    private static final int INDEX_HEADER = 48;
+    private static final int SLOT_SIZE = 16;
+
+    private static final long EMPTY = 0;
+    private static final long TOMBSTONE = -1;
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final double MAX_LOAD = 0.7;
+    private static final long INITIAL_DATA_SIZE = 1 << 20;
+    private static final long MIN_COMPACTION_BYTES = 1 << 16;
+    private static final int COPY_CHUNK = 1 << 16;
+
+    private final File indexFile;
+    private final Gson gson;
+
+    private FileChannel dataChannel;
+    private FileChannel indexChannel;
+    private MappedByteBuffer data;
+    private MappedByteBuffer index;
+
+    private int capacity;
+    private int size;
+    private int tombstones;
+    private long dataEnd;
+    private long deadBytes;
+
+    public BinaryDatabase(Plugin plugin, File file, File indexFile, FileDatabaseConfig config, LoggingService logger,
+                          TaskService taskService, DatabaseExecutor executor) {
+        super(plugin, DatabaseType.BINARY, file, config, logger, taskService, executor);
+        this.indexFile = indexFile;
+        this.gson = new Gson();
+    }
+
+    @Override
+    public DatabaseType getType() {
+        return DatabaseType.BINARY;
+    }
+
+    @Override
+    public CompletableFuture<Void> connect() {
+        return executeLifecycle(() -> {
+            try {
+                prepareFile();
+
+                dataChannel = FileChannel.open(file.toPath(),
+                        StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+                indexChannel = FileChannel.open(indexFile.toPath(),
+                        StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+
+                openData();
+                if (finishCompaction() || !openIndex()) {
+                    if (dataEnd > DATA_HEADER) {
+                        logger.warn("Rebuilding binary index for", file.getName());
+                    }
+                    rebuildIndex();
+                }
+
+                connected = true;
+                logger.debug("Connected to binary database:", file.getName(), "- Keys:", size);
+            } catch (IOException e) {
+                logger.error(e, "Failed to connect to binary database");
+                closeChannels();
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> disconnect() {
+        return executeLifecycle(() -> {
+            if (connected) {
+                persist();
+                closeChannels();
+                dropIndex();
+                connected = false;
+                logger.debug("Disconnected from binary database:", file.getName());
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> save(String key, Object value) {
+        return durable(executeAsync(() -> {
+            if (!connected) {
+                throw new IllegalStateException("Not connected to database");
+            }
+            try {
+                if (value == null) {
+                    remove(key);
+                    indexRemove(key);
+                } else {
+                    put(key, gson.toJson(value).getBytes(StandardCharsets.UTF_8));
+                    indexAdd(key);
+                }
+            } catch (IOException e) {
+                logger.error(e, "Failed to save binary data");
+                throw new RuntimeException(e);
+            }
+            return markDirty();
+        }));
+    }
+
+    @Override
+    public <T> CompletableFuture<T> load(String key, Class<T> type) {
+        return executeAsync(() -> {
+            if (!connected) {
+                throw new IllegalStateException("Not connected to database");
+            }
+            int slot = findSlot(key.getBytes(StandardCharsets.UTF_8), hash(key));
+            if (slot < 0) {
+                return null;
+            }
+
+            long offset = index.getLong(slotPosition(slot));
+            int keyLength = data.getInt((int) offset);
+            int valueLength = data.getInt((int) offset + 4);
+            ByteBuffer value = data.slice((int) offset + RECORD_HEADER + keyLength, valueLength);
+            return gson.fromJson(StandardCharsets.UTF_8.decode(value).toString(), type);
+        });
+    }
+
+    @Override
+    public CompletableFuture<Boolean> exists(String key) {
+        return executeAsync(() -> {
+            if (!connected) {
+                throw new IllegalStateException("Not connected to database");
+            }
+            return findSlot(key.getBytes(StandardCharsets.UTF_8), hash(key)) >= 0;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> delete(String key) {
+        return durable(executeAsync(() -> {
+            if (!connected) {
+                throw new IllegalStateException("Not connected to database");
+            }
+            try {
+                remove(key);
+                indexRemove(key);
+            } catch (IOException e) {
+                logger.error(e, "Failed to delete binary data");
+                throw new RuntimeException(e);
+            }
+            return markDirty();
+        }));
+    }
+
+    @Override
+    public CompletableFuture<List<String>> getKeys() {
+        return executeAsync(() -> {
+            if (!connected) {
+                throw new IllegalStateException("Not connected to database");
+            }
+            return indexKeys();
+        });
+    }
+
+    @Override
+    protected List<String> indexKeys() {
+        List<String> keys = new ArrayList<>(size);
+        for (int slot = 0; slot < capacity; slot++) {
+            long offset = index.getLong(slotPosition(slot));
+            if (offset != EMPTY && offset != TOMBSTONE) {
+                keys.add(readKey(offset));
+            }
+        }
+        return keys;
+    }
+
+    @Override
+    protected void writeToFile() {
+        if (!config.isFsync()) {
+            return;
+        }
+        data.force();
+        index.force();
+    }
+
+    private void put(String key, byte[] value) throws IOException {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        int hash = hash(key);
+        long offset = append(keyBytes, value);
+        int recordLength = RECORD_HEADER + keyBytes.length + value.length;
+
+        int slot = findSlot(keyBytes, hash);
+        if (slot >= 0) {
+            deadBytes += index.getInt(slotPosition(slot) + 12);
+        } else {
+            ensureIndexCapacity();
+            slot = findInsertSlot(hash);
+            if (index.getLong(slotPosition(slot)) == TOMBSTONE) {
+                tombstones--;
+            }
+            size++;
+        }
+        writeSlot(slot, offset, hash, recordLength);
+        writeIndexHeader();
+        maybeCompact();
+    }
+
+    private void remove(String key) throws IOException {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        int slot = findSlot(keyBytes, hash(key));
+        if (slot < 0) {
+            return;
+        }
+
+        // The delete record lets a rebuilt index forget the key as well
+        append(keyBytes, null);
+        deadBytes += index.getInt(slotPosition(slot) + 12) + RECORD_HEADER + keyBytes.length;
+        index.putLong(slotPosition(slot), TOMBSTONE);
+        size--;
+        tombstones++;
+        writeIndexHeader();
+        maybeCompact();
+    }
+
+    private long append(byte[] key, byte[] value) throws IOException {
+        int valueLength = value == null ? -1 : value.length;
+        long offset = dataEnd;
+        long end = offset + RECORD_HEADER + key.length + Math.max(valueLength, 0);
+        ensureDataCapacity(end);
+
+        int position = (int) offset;
+        data.putInt(position, key.length);
+        data.putInt(position + 4, valueLength);
+        data.put(position + RECORD_HEADER, key);
+        if (value != null) {
+            data.put(position + RECORD_HEADER + key.length, value);
+        }
+
+        dataEnd = end;
+        data.putLong(8, dataEnd);
+        return offset;
+    }
+
+    private int findSlot(byte[] key, int hash) {
+        int mask = capacity - 1;
+        for (int i = 0, slot = hash & mask; i < capacity; i++, slot = (slot + 1) & mask) {
+            int position = slotPosition(slot);
+            long offset = index.getLong(position);
+            if (offset == EMPTY) {
+                return -1;
+            }
+            if (offset != TOMBSTONE && index.getInt(position + 8) == hash && keyEquals(offset, key)) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private int findInsertSlot(int hash) {
+        int mask = capacity - 1;
+        int slot = hash & mask;
+        while (true) {
+            long offset = index.getLong(slotPosition(slot));
+            if (offset == EMPTY || offset == TOMBSTONE) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private boolean keyEquals(long offset, byte[] key) {
+        int keyLength = data.getInt((int) offset);
+        return keyLength == key.length
+                && data.slice((int) offset + RECORD_HEADER, keyLength).mismatch(ByteBuffer.wrap(key)) == -1;
+    }
+
+    private String readKey(long offset) {
+        int keyLength = data.getInt((int) offset);
+        return StandardCharsets.UTF_8.decode(data.slice((int) offset + RECORD_HEADER, keyLength)).toString();
+    }
+
+    private void writeSlot(int slot, long offset, int hash, int recordLength) {
+        int position = slotPosition(slot);
+        index.putLong(position, offset);
+        index.putInt(position + 8, hash);
+        index.putInt(position + 12, recordLength);
+    }
+
+    private static int slotPosition(int slot) {
+        return INDEX_HEADER + slot * SLOT_SIZE;
+    }
+
+    private static int hash(String key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private void openData() throws IOException {
+        long fileSize = dataChannel.size();
+        data = dataChannel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(fileSize, INITIAL_DATA_SIZE));
+
+        if (fileSize < DATA_HEADER || data.getInt(0) != DATA_MAGIC) {
+            data.putInt(0, DATA_MAGIC);
+            data.putInt(4, VERSION);
+            data.putLong(8, DATA_HEADER);
+        }
+        dataEnd = data.getLong(8);
+    }
+
+    private boolean openIndex() throws IOException {
+        long fileSize = indexChannel.size();
+        if (fileSize < INDEX_HEADER) {
+            return false;
+        }
+
+        index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+        if (index.getInt(0) != INDEX_MAGIC || index.getInt(4) != VERSION) {
+            return false;
+        }
+
+        capacity = index.getInt(8);
+        size = index.getInt(12);
+        tombstones = index.getInt(16);
+        deadBytes = index.getLong(32);
+        return Integer.bitCount(capacity) == 1
+                && fileSize >= (long) slotPosition(capacity)
+                && index.getLong(24) == dataEnd;
+    }
+
+    private void rebuildIndex() throws IOException {
+        mapIndex(INITIAL_CAPACITY);
+        size = 0;
+        tombstones = 0;
+        deadBytes = 0;
+
+        long offset = DATA_HEADER;
+        while (offset + RECORD_HEADER <= dataEnd) {
+            int keyLength = data.getInt((int) offset);
+            int valueLength = data.getInt((int) offset + 4);
+            // Computed as long so garbage lengths cannot wrap around and pass the bounds check
+            long length = (long) RECORD_HEADER + keyLength + Math.max(valueLength, 0);
+            if (keyLength < 0 || valueLength < -1 || offset + length > dataEnd) {
+                break;
+            }
+            int recordLength = (int) length;
+
+            String key = readKey(offset);
+            byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+            int hash = hash(key);
+            int slot = findSlot(keyBytes, hash);
+
+            if (valueLength < 0) {
+                deadBytes += recordLength;
+                if (slot >= 0) {
+                    deadBytes += index.getInt(slotPosition(slot) + 12);
+                    index.putLong(slotPosition(slot), TOMBSTONE);
+                    size--;
+                    tombstones++;
+                }
+            } else {
+                if (slot >= 0) {
+                    deadBytes += index.getInt(slotPosition(slot) + 12);
+                } else {
+                    ensureIndexCapacity();
+                    slot = findInsertSlot(hash);
+                    if (index.getLong(slotPosition(slot)) == TOMBSTONE) {
+                        tombstones--;
+                    }
+                    size++;
+                }
+                writeSlot(slot, offset, hash, recordLength);
+            }
+            offset += recordLength;
+        }
+
+        // Anything past the last complete record is a torn write
+        dataEnd = offset;
+        data.putLong(8, dataEnd);
+        writeIndexHeader();
+        index.putInt(0, INDEX_MAGIC);
+    }
+
+    // Leaves the index invalid, callers write the magic number once every slot is filled in
+    private void mapIndex(int newCapacity) throws IOException {
+        capacity = newCapacity;
+        index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, slotPosition(newCapacity));
+        index.putInt(0, 0);
+        for (int position = INDEX_HEADER; position < slotPosition(newCapacity); position += SLOT_SIZE) {
+            index.putLong(position, EMPTY);
+        }
+        index.putInt(4, VERSION);
+    }
+
+    private void writeIndexHeader() {
+        index.putInt(8, capacity);
+        index.putInt(12, size);
+        index.putInt(16, tombstones);
+        index.putLong(24, dataEnd);
+        index.putLong(32, deadBytes);
+    }
+
+    private void ensureIndexCapacity() throws IOException {
+        if (size + tombstones + 1 <= capacity * MAX_LOAD) {
+            return;
+        }
+
+        int newCapacity = (size + 1) > capacity * MAX_LOAD / 2 ? capacity * 2 : capacity;
+        long[] offsets = new long[size];
+        int[] hashes = new int[size];
+        int[] lengths = new int[size];
+        int live = 0;
+        for (int slot = 0; slot < capacity; slot++) {
+            int position = slotPosition(slot);
+            long offset = index.getLong(position);
+            if (offset != EMPTY && offset != TOMBSTONE) {
+                offsets[live] = offset;
+                hashes[live] = index.getInt(position + 8);
+                lengths[live] = index.getInt(position + 12);
+                live++;
+            }
+        }
+
+        // The slots are rewritten in place, a crash part way must not leave a valid looking index.
+        // During a rebuild the index is not valid yet and must stay that way
+        boolean valid = index.getInt(0) == INDEX_MAGIC;
+        invalidateIndex();
+        mapIndex(newCapacity);
+        tombstones = 0;
+        for (int i = 0; i < live; i++) {
+            writeSlot(findInsertSlot(hashes[i]), offsets[i], hashes[i], lengths[i]);
+        }
+        writeIndexHeader();
+        if (valid) {
+            index.putInt(0, INDEX_MAGIC);
+        }
+    }
+
+    // A reopen rebuilds an index without its magic number from the data file
+    private void invalidateIndex() {
+        index.putInt(0, 0);
+        if (config.isFsync()) {
+            index.force();
+        }
+    }
+
+    private void ensureDataCapacity(long required) throws IOException {
+        if (required > Integer.MAX_VALUE) {
+            throw new IOException("Binary database exceeds the 2GB data file limit: " + file.getName());
+        }
+        if (required <= data.capacity()) {
+            return;
+        }
+        long newSize = Math.min(Math.max((long) data.capacity() * 2, required), Integer.MAX_VALUE);
+        data = dataChannel.map(FileChannel.MapMode.READ_WRITE, 0, newSize);
+    }
+
+    private void maybeCompact() throws IOException {
+        long used = dataEnd - DATA_HEADER;
+        if (used < MIN_COMPACTION_BYTES || deadBytes < used * config.getCompactionRatio()) {
+            return;
+        }
+        compact();
+    }
+
+    /**
+     * Writes every live record in offset order to the side file, invalidates the index
+     * and only then copies the compacted records over the start of the data file. A
+     * crash before the side file is complete leaves both files untouched; a crash after
+     * it is complete is finished by {@link #finishCompaction()}.
+     */
+    private void compact() throws IOException {
+        int[] slots = new int[size];
+        int live = 0;
+        for (int slot = 0; slot < capacity; slot++) {
+            long offset = index.getLong(slotPosition(slot));
+            if (offset != EMPTY && offset != TOMBSTONE) {
+                slots[live++] = slot;
+            }
+        }
+
+        Integer[] order = new Integer[live];
+        for (int i = 0; i < live; i++) {
+            order[i] = slots[i];
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(index.getLong(slotPosition(a)), index.getLong(slotPosition(b))));
+
+        long[] moved = new long[live];
+        Path journal = compactionFile();
+        try {
+            AtomicFileWriter.write(journal, config.isFsync(), channel -> {
+                long writePosition = DATA_HEADER;
+                for (int i = 0; i < order.length; i++) {
+                    int position = slotPosition(order[i]);
+                    int length = index.getInt(position + 12);
+                    ByteBuffer record = data.slice((int) index.getLong(position), length);
+                    while (record.hasRemaining()) {
+                        channel.write(record);
+                    }
+                    moved[i] = writePosition;
+                    writePosition += length;
+                }
+            });
+        } catch (IOException e) {
+            // Nothing has been moved yet, so the database stays as it was
+            logger.error(e, "Failed to compact binary database:", file.getName());
+            return;
+        }
+
+        // From here on the slots may point at overwritten bytes, a reopen must rebuild
+        invalidateIndex();
+
+        long reclaimed = dataEnd - applyCompaction(journal);
+        Files.delete(journal);
+
+        for (int i = 0; i < order.length; i++) {
+            index.putLong(slotPosition(order[i]), moved[i]);
+        }
+        deadBytes = 0;
+        writeIndexHeader();
+        index.putInt(0, INDEX_MAGIC);
+        logger.debug("Compacted binary database:", file.getName(), "- Reclaimed", reclaimed, "bytes");
+    }
+
+    /**
+     * Copies the side file over the start of the data file and returns the new end. Safe
+     * to repeat, since the side file is only deleted once the copy is complete.
+     */
+    private long applyCompaction(Path journal) throws IOException {
+        try (FileChannel channel = FileChannel.open(journal, StandardOpenOption.READ)) {
+            long length = channel.size();
+            ensureDataCapacity(DATA_HEADER + length);
+            ByteBuffer target = data.slice(DATA_HEADER, (int) length);
+            while (target.hasRemaining() && channel.read(target) >= 0) {
+                // Keep reading until the whole side file is copied
+            }
+            if (target.hasRemaining()) {
+                throw new IOException("Compaction file ended early: " + journal.getFileName());
+            }
+            dataEnd = DATA_HEADER + length;
+        }
+        data.putLong(8, dataEnd);
+        if (config.isFsync()) {
+            data.force();
+        }
+        return dataEnd;
+    }
+
+    private boolean finishCompaction() throws IOException {
+        Path journal = compactionFile();
+        if (!Files.exists(journal)) {
+            return false;
+        }
+        logger.warn("Finishing interrupted compaction of", file.getName());
+        applyCompaction(journal);
+        Files.delete(journal);
+        return true;
+    }
+
+    private Path compactionFile() {
+        return file.toPath().resolveSibling(file.getName() + ".compact");
+    }
+
+    private void closeChannels() {
+        data = null;
+        index = null;
+        try {
+            if (dataChannel != null) {
+                dataChannel.close();
+            }
+            if (indexChannel != null) {
+                indexChannel.close();
+            }
+        } catch (IOException e) {
+            logger.error(e, "Failed to close binary database files");
+        }
+        dataChannel = null;
+        indexChannel = null;
+    }
+}
@@ -0,0 +1,339 @@
+package org.extstudios.extcore.internal.database;
+
+import org.extstudios.extcore.api.database.CacheConfig;
+import org.extstudios.extcore.api.database.CacheStats;
+import org.extstudios.extcore.api.database.CachedDatabase;
+import org.extstudios.extcore.api.database.Database;
+import org.extstudios.extcore.api.database.DatabaseType;
+import org.extstudios.extcore.api.database.DatabaseStats;
+import org.extstudios.extcore.api.database.ExecutorStats;
+import org.extstudios.extcore.api.database.ExportFormat;
+import org.extstudios.extcore.api.database.Page;
+import org.extstudios.extcore.api.database.PreparedQuery;
+import org.extstudios.extcore.api.database.RowMapper;
+import org.extstudios.extcore.api.database.TransactionContext;
+import org.extstudios.extcore.api.database.TransactionOptions;
+
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Read-through/write-through cache in front of another {@link Database}. Cache
+ * hits complete synchronously; misses and writes go to the delegate.
+ */
+public class CachedDatabaseImpl implements CachedDatabase, CacheStats {
+
+    // Markers for "known missing" and "known present, value not loaded yet"
+    private static final Object ABSENT = new Object();
+    private static final Object PRESENT = new Object();
+    private static final int GENERATION_STRIPES = 64;
+
+    private final Database delegate;
+    private final boolean cacheNegativeResults;
+    private final LruCache<String, Object> cache;
+    // Bumped on every write to a key's stripe, a read or write only caches if its stripe did not move
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+
+    public CachedDatabaseImpl(Database delegate, CacheConfig config) {
+        this.delegate = delegate;
+        this.cacheNegativeResults = config.isCacheNegativeResults();
+
+        if (config.getMaximumWeight() > 0) {
+            this.cache = new LruCache<>(config.getMaximumWeight(), config.getExpireAfterWrite(),
+                    value -> value == ABSENT || value == PRESENT ? 1 : config.getWeigher().applyAsInt(value));
+        } else {
+            this.cache = new LruCache<>(config.getMaximumSize(), config.getExpireAfterWrite());
+        }
+    }
+
+    @Override
+    public Database getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public <T> CompletableFuture<T> load(String key, Class<T> type) {
+        // The PRESENT marker or a value of another type still needs the delegate, so it is a miss
+        Object cached = cache.get(key, value -> value == ABSENT || value != PRESENT && type.isInstance(value));
+        if (cached == ABSENT) {
+            return CompletableFuture.completedFuture(null);
+        }
+        if (cached != null) {
+            return CompletableFuture.completedFuture(type.cast(cached));
+        }
+
+        long generation = generation(key);
+        return delegate.load(key, type).thenApply(value -> {
+            if (value != null) {
+                putIfCurrent(key, value, generation);
+            } else if (cacheNegativeResults) {
+                putIfCurrent(key, ABSENT, generation);
+            }
+            return value;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Boolean> exists(String key) {
+        Object cached = cache.get(key);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached != ABSENT);
+        }
+
+        long generation = generation(key);
+        return delegate.exists(key).thenApply(exists -> {
+            if (exists) {
+                putIfCurrent(key, PRESENT, generation);
+            } else if (cacheNegativeResults) {
+                putIfCurrent(key, ABSENT, generation);
+            }
+            return exists;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> save(String key, Object value) {
+        long generation = bump(key);
+        return delegate.save(key, value).whenComplete((result, error) -> {
+            if (error == null && value != null) {
+                putIfCurrent(key, value, generation);
+            } else {
+                cache.invalidate(key);
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> delete(String key) {
+        long generation = bump(key);
+        return delegate.delete(key).whenComplete((result, error) -> {
+            if (error == null && cacheNegativeResults) {
+                putIfCurrent(key, ABSENT, generation);
+            } else {
+                cache.invalidate(key);
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<List<String>> getKeys() {
+        return delegate.getKeys();
+    }
+
+    @Override
+    public CompletableFuture<List<String>> getKeys(String prefix) {
+        return delegate.getKeys(prefix);
+    }
+
+    @Override
+    public CompletableFuture<List<String>> scan(String from, String to, int limit) {
+        return delegate.scan(from, to, limit);
+    }
+
+    @Override
+    public void invalidate(String key) {
+        bump(key);
+    }
+
+    @Override
+    public void invalidateIf(Predicate<String> predicate) {
+        bumpAll();
+        cache.invalidateIf(predicate);
+    }
+
+    @Override
+    public void invalidateAll() {
+        bumpAll();
+        cache.clear();
+    }
+
+    private long generation(String key) {
+        return generations.get(stripe(key));
+    }
+
+    // Drops the key and makes in-flight reads and older writes of it skip the cache
+    private long bump(String key) {
+        long generation = generations.incrementAndGet(stripe(key));
+        cache.invalidate(key);
+        return generation;
+    }
+
+    private void bumpAll() {
+        for (int i = 0; i < GENERATION_STRIPES; i++) {
+            generations.incrementAndGet(i);
+        }
+    }
+
+    private void putIfCurrent(String key, Object value, long generation) {
+        cache.put(key, value);
+        // A write that started meanwhile may have invalidated before this put landed
+        if (generations.get(stripe(key)) != generation) {
+            cache.invalidate(key);
+        }
+    }
+
+    private static int stripe(String key) {
+        return key.hashCode() & (GENERATION_STRIPES - 1);
+    }
+
+    @Override
+    public CacheStats getCacheStats() {
+        return this;
+    }
+
+    @Override
+    public long getHitCount() {
+        return cache.hitCount();
+    }
+
+    @Override
+    public long getMissCount() {
+        return cache.missCount();
+    }
+
+    @Override
+    public long getEvictionCount() {
+        return cache.evictionCount();
+    }
+
+    @Override
+    public double getHitRate() {
+        long hits = cache.hitCount();
+        long total = hits + cache.missCount();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    @Override
+    public int getSize() {
+        return cache.size();
+    }
+
+    @Override
+    public DatabaseType getType() {
+        return delegate.getType();
+    }
+
+    @Override
+    public CompletableFuture<Void> connect() {
+        return delegate.connect();
+    }
+
+    @Override
+    public CompletableFuture<Void> disconnect() {
+        return delegate.disconnect().whenComplete((result, error) -> cache.clear());
+    }
+
+    @Override
+    public boolean isConnected() {
+        return delegate.isConnected();
+    }
+
+    @Override
+    public Connection getConnection() {
+        return delegate.getConnection();
+    }
+
+    @Override
+    public ExecutorStats getExecutorStats() {
+        return delegate.getExecutorStats();
+    }
+
+    @Override
+    public DatabaseStats getStats() {
+        return delegate.getStats();
+    }
+
+    @Override
+    public CompletableFuture<Integer> executeUpdate(String sql, Object... params) {
+        return delegate.executeUpdate(sql, params);
+    }
+
+    @Override
+    public CompletableFuture<List<Map<String, Object>>> executeQuery(String sql, Object... params) {
+        return delegate.executeQuery(sql, params);
+    }
+
+    @Override
+    public <T> CompletableFuture<List<T>> executeQuery(String sql, RowMapper<T> mapper, Object... params) {
+        return delegate.executeQuery(sql, mapper, params);
+    }
+
+    @Override
+    public CompletableFuture<Long> streamQuery(String sql, Consumer<Map<String, Object>> consumer, Object... params) {
+        return delegate.streamQuery(sql, consumer, params);
+    }
+
+    @Override
+    public <T> CompletableFuture<Long> streamMapped(String sql, RowMapper<T> mapper, Consumer<? super T> consumer,
+                                                    Object... params) {
+        return delegate.streamMapped(sql, mapper, consumer, params);
+    }
+
+    @Override
+    public CompletableFuture<int[]> executeBatch(String sql, List<Object[]> params) {
+        return delegate.executeBatch(sql, params);
+    }
+
+    @Override
+    public CompletableFuture<int[]> executeBatch(String sql, Iterable<Object[]> params) {
+        return delegate.executeBatch(sql, params);
+    }
+
+    @Override
+    public CompletableFuture<Page> page(String table, String orderColumn, Object afterValue, int limit) {
+        return delegate.page(table, orderColumn, afterValue, limit);
+    }
+
+    @Override
+    public CompletableFuture<Long> exportTo(String sql, OutputStream out, ExportFormat format, Object... params) {
+        return delegate.exportTo(sql, out, format, params);
+    }
+
+    @Override
+    public CompletableFuture<Long> exportTo(String sql, Path file, ExportFormat format, Object... params) {
+        return delegate.exportTo(sql, file, format, params);
+    }
+
+    @Override
+    public CompletableFuture<Integer> upsertAll(String table, List<String> keyColumns, List<Map<String, Object>> rows) {
+        return delegate.upsertAll(table, keyColumns, rows);
+    }
+
+    @Override
+    public PreparedQuery prepare(String name, String sql) {
+        return delegate.prepare(name, sql);
+    }
+
+    @Override
+    public PreparedQuery prepare(String name, String sql, boolean idempotent) {
+        return delegate.prepare(name, sql, idempotent);
+    }
+
+    @Override
+    public PreparedQuery getPreparedQuery(String name) {
+        return delegate.getPreparedQuery(name);
+    }
+
+    @Override
+    public <T> CompletableFuture<T> inTransaction(Function<TransactionContext, T> work) {
+        return delegate.inTransaction(work);
+    }
+
+    @Override
+    public <T> CompletableFuture<T> inTransaction(TransactionOptions options, Function<TransactionContext, T> work) {
+        return delegate.inTransaction(options, work);
+    }
+
+    @Override
+    public CompletableFuture<Void> flush() {
+        return delegate.flush();
+    }
+}
@@ -0,0 +1,108 @@
+package org.extstudios.extcore.internal.database;
+
+import org.extstudios.extcore.api.database.CircuitState;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Opens after {@code threshold} consecutive connection failures and rejects calls
+ * until {@code openTime} has passed. It then lets a single probe through; the probe's
+ * outcome either closes the circuit again or restarts the open period.
+ */
+public class CircuitBreaker {
+
+    private final int threshold;
+    private final long openNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private CircuitState state = CircuitState.CLOSED;
+    private int failures;
+    private long openedAt;
+    private long probeStartedAt;
+
+    public CircuitBreaker(int threshold, long openTimeMillis) {
+        this.threshold = threshold;
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openTimeMillis);
+    }
+
+    public boolean tryAcquire() {
+        if (threshold == 0) {
+            return true;
+        }
+
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            switch (state) {
+                case CLOSED:
+                    return true;
+                case OPEN:
+                    if (now - openedAt < openNanos) {
+                        return false;
+                    }
+                    state = CircuitState.HALF_OPEN;
+                    probeStartedAt = now;
+                    return true;
+                default:
+                    // A probe that never reported back must not keep the circuit stuck
+                    if (now - probeStartedAt < openNanos) {
+                        return false;
+                    }
+                    probeStartedAt = now;
+                    return true;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Returns true when this call closed a previously open circuit
+    public boolean onSuccess() {
+        if (threshold == 0) {
+            return false;
+        }
+
+        lock.lock();
+        try {
+            failures = 0;
+            if (state == CircuitState.CLOSED) {
+                return false;
+            }
+            state = CircuitState.CLOSED;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Returns true when this failure opened the circuit
+    public boolean onFailure() {
+        if (threshold == 0) {
+            return false;
+        }
+
+        lock.lock();
+        try {
+            failures++;
+            if (state == CircuitState.HALF_OPEN || (state == CircuitState.CLOSED && failures >= threshold)) {
+                boolean opened = state == CircuitState.CLOSED;
+                state = CircuitState.OPEN;
+                openedAt = System.nanoTime();
+                return opened;
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public CircuitState getState() {
+        lock.lock();
+        try {
+            return state;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package org.extstudios.extcore.internal.database;
+
+import org.extstudios.extcore.api.database.CircuitState;
+import org.extstudios.extcore.api.database.DatabaseOverloadedException;
+import org.extstudios.extcore.api.database.ExecutorConfig;
+import org.extstudios.extcore.api.database.ExecutorStats;
+import org.extstudios.extcore.api.database.RejectionPolicy;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Runs database work on virtual threads, at most {@code maxConcurrency} at a time.
+ * Work beyond that waits in a bounded FIFO queue and is handed to the next free
+ * worker; once the queue is full the {@link RejectionPolicy} applies. Operations in
+ * flight are therefore bounded by {@code maxConcurrency + queueCapacity}.
+ * Submissions from the server tick thread never block or run inline there:
+ * {@code BLOCK} and {@code CALLER_RUNS} fall back to {@code ABORT} on that thread.
+ */
+public class DatabaseExecutor implements ExecutorStats {
+
+    private final String name;
+    private final int maxConcurrency;
+    private final int queueCapacity;
+    private final RejectionPolicy rejectionPolicy;
+    private final long blockTimeoutNanos;
+    private final ThreadFactory threadFactory;
+    private final CircuitBreaker circuitBreaker;
+    private final BooleanSupplier onTickThread;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private final ArrayDeque<QueuedTask> queue = new ArrayDeque<>();
+    private int active;
+
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder discarded = new LongAdder();
+    private final LongAdder started = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    public DatabaseExecutor(String name, int maxConcurrency, ExecutorConfig config) {
+        this(name, maxConcurrency, config, () -> false);
+    }
+
+    public DatabaseExecutor(String name, int maxConcurrency, ExecutorConfig config, BooleanSupplier onTickThread) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("Max concurrency must be at least 1");
+        }
+        this.name = name;
+        this.maxConcurrency = maxConcurrency;
+        this.queueCapacity = config.getQueueCapacity();
+        this.rejectionPolicy = config.getRejectionPolicy();
+        this.blockTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(config.getBlockTimeout());
+        this.threadFactory = Thread.ofVirtual().name(name + "-", 0).factory();
+        this.circuitBreaker = new CircuitBreaker(config.getCircuitBreakerThreshold(), config.getCircuitBreakerOpenTime());
+        this.onTickThread = onTickThread;
+    }
+
+    public void execute(Runnable task) {
+        execute(task, null);
+    }
+
+    // onDiscard is told when DISCARD_OLDEST drops the task after it was queued
+    public void execute(Runnable task, Consumer<RejectedExecutionException> onDiscard) {
+        QueuedTask queued = new QueuedTask(task, onDiscard, System.nanoTime());
+        QueuedTask dropped = null;
+        RejectionPolicy policy = effectivePolicy();
+
+        lock.lock();
+        try {
+            if (!tryEnqueue(queued)) {
+                switch (policy) {
+                    case BLOCK:
+                        if (!awaitSpace(queued)) {
+                            queued = null;
+                        }
+                        break;
+                    case DISCARD_OLDEST:
+                        dropped = queue.poll();
+                        if (dropped != null) {
+                            queue.add(queued);
+                            queued.queued = true;
+                        } else {
+                            queued = null;
+                        }
+                        break;
+                    default:
+                        queued = null;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (dropped != null) {
+            discarded.increment();
+            if (dropped.onDiscard != null) {
+                dropped.onDiscard.accept(overloaded("dropped the oldest queued operation"));
+            }
+        }
+
+        if (queued != null) {
+            if (!queued.queued) {
+                QueuedTask first = queued;
+                threadFactory.newThread(() -> drain(first)).start();
+            }
+            return;
+        }
+
+        rejected.increment();
+        if (policy == RejectionPolicy.CALLER_RUNS) {
+            task.run();
+            return;
+        }
+        throw overloaded("is saturated");
+    }
+
+    // Blocking or running the work inline would stall the tick, so the tick thread always gets ABORT
+    private RejectionPolicy effectivePolicy() {
+        if ((rejectionPolicy == RejectionPolicy.BLOCK || rejectionPolicy == RejectionPolicy.CALLER_RUNS)
+                && onTickThread.getAsBoolean()) {
+            return RejectionPolicy.ABORT;
+        }
+        return rejectionPolicy;
+    }
+
+    // Must hold the lock. Claims a worker slot or a queue slot, false when both are full
+    private boolean tryEnqueue(QueuedTask task) {
+        if (active < maxConcurrency) {
+            active++;
+            return true;
+        }
+        if (queue.size() < queueCapacity) {
+            queue.add(task);
+            task.queued = true;
+            return true;
+        }
+        return false;
+    }
+
+    // Must hold the lock
+    private boolean awaitSpace(QueuedTask task) {
+        long remaining = blockTimeoutNanos;
+        try {
+            while (remaining > 0) {
+                remaining = notFull.awaitNanos(remaining);
+                if (tryEnqueue(task)) {
+                    return true;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    private DatabaseOverloadedException overloaded(String reason) {
+        return new DatabaseOverloadedException("Database executor " + name + " " + reason + " ("
+                + maxConcurrency + " running, " + queueCapacity + " queued)");
+    }
+
+    private void drain(QueuedTask task) {
+        while (task != null) {
+            recordWait(System.nanoTime() - task.submittedAt);
+            try {
+                task.runnable.run();
+            } catch (Throwable t) {
+                Thread current = Thread.currentThread();
+                current.getUncaughtExceptionHandler().uncaughtException(current, t);
+            } finally {
+                completed.increment();
+            }
+            task = next();
+        }
+    }
+
+    private QueuedTask next() {
+        lock.lock();
+        try {
+            QueuedTask task = queue.poll();
+            if (task == null) {
+                active--;
+            }
+            notFull.signal();
+            return task;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void recordWait(long waitNanos) {
+        started.increment();
+        totalWaitNanos.add(waitNanos);
+        maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    @Override
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    @Override
+    public int getActiveCount() {
+        lock.lock();
+        try {
+            return active;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int getQueueDepth() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    @Override
+    public long getCompletedCount() {
+        return completed.sum();
+    }
+
+    @Override
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    @Override
+    public long getDiscardedCount() {
+        return discarded.sum();
+    }
+
+    @Override
+    public CircuitState getCircuitState() {
+        return circuitBreaker.getState();
+    }
+
+    @Override
+    public double getAverageWaitMillis() {
+        long count = started.sum();
+        return count == 0 ? 0 : totalWaitNanos.sum() / (count * 1_000_000.0);
+    }
+
+    @Override
+    public double getMaxWaitMillis() {
+        return maxWaitNanos.get() / 1_000_000.0;
+    }
+
+    private static final class QueuedTask {
+
+        private final Runnable runnable;
+        private final Consumer<RejectedExecutionException> onDiscard;
+        private final long submittedAt;
+        private boolean queued;
+
+        private QueuedTask(Runnable runnable, Consumer<RejectedExecutionException> onDiscard, long submittedAt) {
+            this.runnable = runnable;
+            this.onDiscard = onDiscard;
+            this.submittedAt = submittedAt;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package org.extstudios.extcore.internal.database;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+import org.extstudios.extcore.api.LoggingService;
+import org.extstudios.extcore.api.database.ConnectionPoolStats;
+import org.extstudios.extcore.api.database.DatabaseStats;
+import org.extstudios.extcore.api.database.DatabaseType;
+import org.extstudios.extcore.api.database.ExecutorStats;
+import org.extstudios.extcore.api.database.SlowQuery;
+import org.extstudios.extcore.api.database.StatementStats;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects per-database statement and pool metrics. Statements are keyed by their
+ * SQL template; once {@link #MAX_STATEMENTS} distinct templates are tracked, further
+ * ones are folded into a single overflow entry so dynamically built SQL cannot grow
+ * the map without bound.
+ */
+public class DatabaseMetrics implements DatabaseStats, MetricsTrackerFactory {
+
+    static final int MAX_STATEMENTS = 1000;
+    static final String OTHER_STATEMENTS = "<other>";
+    private static final int SLOW_QUERY_LOG_SIZE = 100;
+
+    private final DatabaseType type;
+    private final DatabaseExecutor executor;
+    private final LoggingService logger;
+
+    private final Map<String, StatementMetrics> statements = new ConcurrentHashMap<>();
+    private final Map<String, PoolMetrics> pools = new ConcurrentHashMap<>();
+    private final ArrayDeque<SlowQuery> slowQueries = new ArrayDeque<>();
+    private final LongAdder executions = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder retrySuccesses = new LongAdder();
+
+    private volatile long slowQueryThresholdNanos;
+
+    public DatabaseMetrics(DatabaseType type, DatabaseExecutor executor, LoggingService logger) {
+        this.type = type;
+        this.executor = executor;
+        this.logger = logger;
+    }
+
+    public void setSlowQueryThreshold(long millis) {
+        this.slowQueryThresholdNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    public void record(String sql, long nanos, long rowCount, boolean failed) {
+        executions.increment();
+        rows.add(rowCount);
+        if (failed) {
+            errors.increment();
+        }
+
+        StatementMetrics metrics = statements.get(sql);
+        if (metrics == null) {
+            String key = statements.size() < MAX_STATEMENTS ? sql : OTHER_STATEMENTS;
+            metrics = statements.computeIfAbsent(key, StatementMetrics::new);
+        }
+        metrics.record(nanos, rowCount, failed);
+
+        long threshold = slowQueryThresholdNanos;
+        if (threshold > 0 && nanos >= threshold) {
+            SlowQuery slowQuery = new SlowQuery(sql, nanos / 1_000_000.0, rowCount, System.currentTimeMillis());
+            synchronized (slowQueries) {
+                if (slowQueries.size() == SLOW_QUERY_LOG_SIZE) {
+                    slowQueries.poll();
+                }
+                slowQueries.add(slowQuery);
+            }
+            logger.warn("Slow query (" + String.format("%.1f", slowQuery.durationMillis()) + "ms, "
+                    + rowCount + " rows):", sql);
+        }
+    }
+
+    public void recordRetry() {
+        retries.increment();
+    }
+
+    public void recordRetrySuccess() {
+        retrySuccesses.increment();
+    }
+
+    @Override
+    public IMetricsTracker create(String poolName, PoolStats poolStats) {
+        return pools.computeIfAbsent(poolName, PoolMetrics::new).attach(poolStats);
+    }
+
+    @Override
+    public String getName() {
+        return executor.getName();
+    }
+
+    @Override
+    public DatabaseType getType() {
+        return type;
+    }
+
+    @Override
+    public ExecutorStats getExecutorStats() {
+        return executor;
+    }
+
+    @Override
+    public Map<String, ConnectionPoolStats> getPoolStats() {
+        return Collections.unmodifiableMap(pools);
+    }
+
+    @Override
+    public Map<String, StatementStats> getStatementStats() {
+        return Collections.unmodifiableMap(statements);
+    }
+
+    @Override
+    public long getExecutionCount() {
+        return executions.sum();
+    }
+
+    @Override
+    public long getErrorCount() {
+        return errors.sum();
+    }
+
+    @Override
+    public long getRowCount() {
+        return rows.sum();
+    }
+
+    @Override
+    public long getRetryCount() {
+        return retries.sum();
+    }
+
+    @Override
+    public long getRetrySuccessCount() {
+        return retrySuccesses.sum();
+    }
+
+    @Override
+    public List<SlowQuery> getSlowQueries() {
+        synchronized (slowQueries) {
+            return List.copyOf(slowQueries);
+        }
+    }
+
+    @Override
+    public void reset() {
+        statements.clear();
+        pools.values().forEach(PoolMetrics::reset);
+        synchronized (slowQueries) {
+            slowQueries.clear();
+        }
+        executions.reset();
+        errors.reset();
+        rows.reset();
+        retries.reset();
+        retrySuccesses.reset();
+    }
+}
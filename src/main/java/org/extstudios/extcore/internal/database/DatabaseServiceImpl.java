@@ -1,9 +1,14 @@
 package org.extstudios.extcore.internal.database;
 
 import org.bukkit.plugin.Plugin;
+import org.extstudios.extcore.api.database.CacheConfig;
+import org.extstudios.extcore.api.database.CachedDatabase;
 import org.extstudios.extcore.api.database.Database;
 import org.extstudios.extcore.api.database.DatabaseService;
+import org.extstudios.extcore.api.database.DatabaseStats;
 import org.extstudios.extcore.api.database.DatabaseType;
+import org.extstudios.extcore.api.database.ExecutorConfig;
+import org.extstudios.extcore.api.database.FileDatabaseConfig;
 import org.extstudios.extcore.api.database.SQLConfig;
 import org.extstudios.extcore.api.LoggingService;
 import org.extstudios.extcore.api.task.TaskService;
@@ -45,7 +50,19 @@ public class DatabaseServiceImpl implements DatabaseService {
 
     @Override
     public Database createYAML(File file) {
-        YAMLDatabase database = new YAMLDatabase(getPluginFromFile(file), file, logger, taskService);
+        return createYAML(file, FileDatabaseConfig.defaults());
+    }
+
+    @Override
+    public Database createYAML(Plugin plugin, String fileName, FileDatabaseConfig config) {
+        File file = new File(plugin.getDataFolder(), fileName + ".yml");
+        return createYAML(file, config);
+    }
+
+    @Override
+    public Database createYAML(File file, FileDatabaseConfig config) {
+        DatabaseExecutor executor = createFileExecutor("YAML-" + file.getName(), config.getExecutorConfig());
+        YAMLDatabase database = new YAMLDatabase(getPluginFromFile(file), file, config, logger, taskService, executor);
         registerDatabase(getPluginFromFile(file), database);
         logger.debug("Created YAML database:", file.getName());
         return database;
@@ -59,12 +76,51 @@ public class DatabaseServiceImpl implements DatabaseService {
 
     @Override
     public Database createJSON(File file) {
-        JSONDatabase database = new JSONDatabase(getPluginFromFile(file), file, logger, taskService);
+        return createJSON(file, FileDatabaseConfig.defaults());
+    }
+
+    @Override
+    public Database createJSON(Plugin plugin, String fileName, FileDatabaseConfig config) {
+        File file = new File(plugin.getDataFolder(), fileName + ".json");
+        return createJSON(file, config);
+    }
+
+    @Override
+    public Database createJSON(File file, FileDatabaseConfig config) {
+        DatabaseExecutor executor = createFileExecutor("JSON-" + file.getName(), config.getExecutorConfig());
+        JSONDatabase database = new JSONDatabase(getPluginFromFile(file), file, config, logger, taskService, executor);
         registerDatabase(getPluginFromFile(file), database);
         logger.debug("Created JSON database:", file.getName());
         return database;
     }
 
+    @Override
+    public Database createBinary(Plugin plugin, String fileName) {
+        return createBinary(plugin, fileName, FileDatabaseConfig.defaults());
+    }
+
+    @Override
+    public Database createBinary(File file) {
+        return createBinary(file, FileDatabaseConfig.defaults());
+    }
+
+    @Override
+    public Database createBinary(Plugin plugin, String fileName, FileDatabaseConfig config) {
+        File file = new File(plugin.getDataFolder(), fileName + ".dat");
+        return createBinary(file, config);
+    }
+
+    @Override
+    public Database createBinary(File file, FileDatabaseConfig config) {
+        File indexFile = new File(file.getPath() + ".idx");
+        DatabaseExecutor executor = createFileExecutor("Binary-" + file.getName(), config.getExecutorConfig());
+        BinaryDatabase database = new BinaryDatabase(getPluginFromFile(file), file, indexFile, config,
+                logger, taskService, executor);
+        registerDatabase(getPluginFromFile(file), database);
+        logger.debug("Created binary database:", file.getName());
+        return database;
+    }
+
     @Override
     public CompletableFuture<Database> createSQL(Plugin plugin, DatabaseType type, SQLConfig config) {
         if (type != DatabaseType.MYSQL && type != DatabaseType.POSTGRESQL && type != DatabaseType.SQLITE) {
@@ -73,7 +129,22 @@ public class DatabaseServiceImpl implements DatabaseService {
             );
         }
 
-        SQLDatabase database = new SQLDatabase(plugin, type, config, logger, taskService);
+        ExecutorConfig executorConfig = config.getExecutorConfig();
+        int concurrency;
+        if (executorConfig.getMaxConcurrency() > 0) {
+            concurrency = executorConfig.getMaxConcurrency();
+        } else if (type == DatabaseType.SQLITE && config.getReadPoolSize() > 0) {
+            // Readers run in parallel, queued writes wait for the single writer connection
+            concurrency = config.getReadPoolSize() + (config.isGroupCommit() ? config.getGroupCommitSize() : 1);
+        } else if (type != DatabaseType.SQLITE) {
+            // Reads spread over the replica pools as well
+            concurrency = config.getMaximumPoolSize() * (1 + config.getReplicas().size());
+        } else {
+            concurrency = config.getMaximumPoolSize();
+        }
+        DatabaseExecutor executor = createExecutor(plugin.getName() + "-" + type.name(), executorConfig, concurrency);
+
+        SQLDatabase database = new SQLDatabase(plugin, type, config, logger, taskService, executor);
         registerDatabase(plugin, database);
 
         return database.connect().thenApply(v -> {
@@ -107,17 +178,19 @@ public class DatabaseServiceImpl implements DatabaseService {
     public CompletableFuture<Database> createSQLite(Plugin plugin, String fileName, SQLConfig config) {
         File dbFile = new File(plugin.getDataFolder(), fileName + ".db");
 
-        SQLConfig customConfig = SQLConfig.sqlite(dbFile.getAbsolutePath())
-                .setMinimumIdle(config.getMinimumIdle())
-                .setMaximumPoolSize(config.getMaximumPoolSize())
-                .setConnectionTimeout(config.getConnectionTimeout())
-                .setIdleTimeout(config.getIdleTimeout())
-                .setMaxLifetime(config.getMaxLifetime())
-                .setAutoCommit(config.isAutoCommit());
+        SQLConfig customConfig = config.toSqlite(dbFile.getAbsolutePath());
 
         return createSQL(plugin, DatabaseType.SQLITE, customConfig);
     }
 
+    @Override
+    public CachedDatabase createCached(Database database, CacheConfig config) {
+        CachedDatabaseImpl cached = new CachedDatabaseImpl(database, config);
+        logger.debug("Created cache for", database.getType().name(), "database - Max size:",
+                config.getMaximumWeight() > 0 ? config.getMaximumWeight() : config.getMaximumSize());
+        return cached;
+    }
+
     @Override
     public int getActiveConnectionCount() {
         return databases.values().stream()
@@ -126,6 +199,17 @@ public class DatabaseServiceImpl implements DatabaseService {
                 .sum();
     }
 
+    @Override
+    public List<DatabaseStats> getStats(Plugin plugin) {
+        List<Database> pluginDatabases = databases.get(plugin);
+        if (pluginDatabases == null) {
+            return List.of();
+        }
+        return pluginDatabases.stream()
+                .map(Database::getStats)
+                .toList();
+    }
+
     @Override
     public CompletableFuture<Void> closeAll(Plugin plugin) {
         List<Database> pluginDatabases = databases.remove(plugin);
@@ -144,6 +228,21 @@ public class DatabaseServiceImpl implements DatabaseService {
                 });
     }
 
+    // File databases keep their state confined to a single executor thread
+    private DatabaseExecutor createFileExecutor(String name, ExecutorConfig config) {
+        if (config.getMaxConcurrency() > 1) {
+            throw new IllegalArgumentException("File databases run one operation at a time, max concurrency "
+                    + config.getMaxConcurrency() + " is not supported for " + name);
+        }
+        return createExecutor(name, config, 1);
+    }
+
+    private DatabaseExecutor createExecutor(String name, ExecutorConfig config, int concurrency) {
+        logger.debug("Database executor", name, "- Concurrency:", concurrency, "- Queue:", config.getQueueCapacity(),
+                "- Overflow:", config.getRejectionPolicy().name());
+        return new DatabaseExecutor(name, concurrency, config, taskService::isOnTickThread);
+    }
+
     private void registerDatabase(Plugin plugin, Database database) {
         databases.computeIfAbsent(plugin, k -> new ArrayList<>()).add(database);
     }
@@ -0,0 +1,39 @@
+package org.extstudios.extcore.internal.database;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * GZIP encoding for file database contents. Reads sniff the two magic bytes, so
+ * plaintext and compressed files can be mixed and switching modes needs no migration.
+ */
+public final class FileCompression {
+
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final int MAGIC_FIRST = 0x1f;
+    private static final int MAGIC_SECOND = 0x8b;
+
+    private FileCompression() {
+    }
+
+    public static InputStream decode(InputStream in) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(in, BUFFER_SIZE);
+        buffered.mark(2);
+        boolean gzip = buffered.read() == MAGIC_FIRST && buffered.read() == MAGIC_SECOND;
+        buffered.reset();
+        return gzip ? new GZIPInputStream(buffered, BUFFER_SIZE) : buffered;
+    }
+
+    public static GZIPOutputStream encode(OutputStream out, int level) throws IOException {
+        return new GZIPOutputStream(out, BUFFER_SIZE) {
+            {
+                def.setLevel(level);
+            }
+        };
+    }
+}
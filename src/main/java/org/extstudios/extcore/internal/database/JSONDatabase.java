@@ -2,32 +2,55 @@ package org.extstudios.extcore.internal.database;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonParser;
+import com.google.gson.TypeAdapter;
 import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 import org.bukkit.plugin.Plugin;
 import org.extstudios.extcore.api.database.DatabaseType;
+import org.extstudios.extcore.api.database.FileDatabaseConfig;
+import org.extstudios.extcore.api.database.StorageMode;
 import org.extstudios.extcore.api.LoggingService;
 import org.extstudios.extcore.api.task.TaskService;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
-public class JSONDatabase extends AbstractDatabase {
+public class JSONDatabase extends AbstractFileDatabase {
+
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
 
-    private final File file;
     private final Gson gson;
+    private final boolean compact;
+    private final Map<Class<?>, TypeAdapter<?>> adapters = new ConcurrentHashMap<>();
+    // Compact mode stores JsonElement trees, otherwise the maps and lists Gson produces
     private Map<String, Object> data;
+    private JsonMutationLog log;
+    // Replaces data when sharding is enabled
+    private ShardedFileStore<Map<String, Object>> shards;
 
-    public JSONDatabase(Plugin plugin, File file, LoggingService logger, TaskService taskService) {
-        super(plugin, logger, taskService);
-        this.file = file;
-        this.gson = new GsonBuilder().setPrettyPrinting().create();
+    public JSONDatabase(Plugin plugin, File file, FileDatabaseConfig config, LoggingService logger,
+                        TaskService taskService, DatabaseExecutor executor) {
+        super(plugin, DatabaseType.JSON, file, config, logger, taskService, executor);
+        this.compact = config.isCompactJson();
+        this.gson = compact ? new Gson() : new GsonBuilder().setPrettyPrinting().create();
         this.data = new HashMap<>();
     }
 
@@ -38,26 +61,27 @@ public class JSONDatabase extends AbstractDatabase {
 
     @Override
     public CompletableFuture<Void> connect() {
-        return executeAsyncVoid(() -> {
+        return executeLifecycle(() -> {
             try {
+                if (config.isSharded()) {
+                    shards = new ShardedFileStore<>(shardDirectory(), ".json", config.getShards(), logger,
+                            path -> Files.exists(path) ? read(path) : new HashMap<>(), this::writeSnapshot);
+                    openShards();
+                    connected = true;
+                    logger.debug("Connected to sharded JSON database:", file.getName(), "- Shards:", config.getShards());
+                    return;
+                }
+
                 if (!file.exists()) {
-                    File parent = file.getParentFile();
-                    if (parent != null && !parent.exists()) {
-                        parent.mkdirs();
-                    }
-                    file.createNewFile();
+                    prepareFile();
                     Files.write(file.toPath(), "{}".getBytes(StandardCharsets.UTF_8));
                 }
 
-                String content = Files.readString(file.toPath());
-                if (content.trim().isEmpty()) {
-                    content = "{}";
-                }
+                data = read(file.toPath());
 
-                TypeToken<Map<String, Object>> token = new TypeToken<Map<String, Object>>() {};
-                data = gson.fromJson(content, token.getType());
-                if (data == null) {
-                    data = new HashMap<>();
+                if (config.getStorageMode() == StorageMode.LOG) {
+                    log = new JsonMutationLog(file, logger, compact);
+                    log.open(data);
                 }
 
                 connected = true;
@@ -71,10 +95,15 @@ public class JSONDatabase extends AbstractDatabase {
 
     @Override
     public CompletableFuture<Void> disconnect() {
-        return executeAsyncVoid(() -> {
+        return executeLifecycle(() -> {
             if (connected) {
-                saveToFile();
+                persist();
+                if (log != null) {
+                    closeLog();
+                }
                 data.clear();
+                shards = null;
+                dropIndex();
                 connected = false;
                 logger.debug("Disconnected from JSON database:", file.getName());
             }
@@ -83,13 +112,22 @@ public class JSONDatabase extends AbstractDatabase {
 
     @Override
     public CompletableFuture<Void> save(String key, Object value) {
-        return executeAsyncVoid(() -> {
+        return durable(executeAsync(() -> {
             if (!connected) {
                 throw new IllegalStateException("Not connected to database");
             }
-            data.put(key, value);
-            saveToFile();
-        });
+            Map<String, Object> bucket = bucket(key);
+            boolean replaced = bucket.containsKey(key);
+            bucket.put(key, compact ? gson.toJsonTree(value) : value);
+            indexAdd(key);
+            if (shards != null) {
+                shards.markDirty(key);
+            }
+            if (log != null) {
+                appendToLog(() -> log.appendPut(key, value, replaced));
+            }
+            return markDirty();
+        }));
     }
 
     @Override
@@ -98,14 +136,13 @@ public class JSONDatabase extends AbstractDatabase {
             if (!connected) {
                 throw new IllegalStateException("Not connected to database");
             }
-            Object value = data.get(key);
+            Object value = bucket(key).get(key);
             if (value == null) {
                 return null;
             }
 
-            // Convert using Gson for proper type handling
-            String json = gson.toJson(value);
-            return gson.fromJson(json, type);
+            JsonElement tree = value instanceof JsonElement element ? element : gson.toJsonTree(value);
+            return adapter(type).fromJsonTree(tree);
         });
     }
 
@@ -115,19 +152,28 @@ public class JSONDatabase extends AbstractDatabase {
             if (!connected) {
                 throw new IllegalStateException("Not connected to database");
             }
-            return data.containsKey(key);
+            return bucket(key).containsKey(key);
         });
     }
 
     @Override
     public CompletableFuture<Void> delete(String key) {
-        return executeAsyncVoid(() -> {
+        return durable(executeAsync(() -> {
             if (!connected) {
                 throw new IllegalStateException("Not connected to database");
             }
-            data.remove(key);
-            saveToFile();
-        });
+            Map<String, Object> bucket = bucket(key);
+            boolean existed = bucket.containsKey(key);
+            bucket.remove(key);
+            indexRemove(key);
+            if (shards != null && existed) {
+                shards.markDirty(key);
+            }
+            if (log != null) {
+                appendToLog(() -> log.appendDelete(key, existed));
+            }
+            return markDirty();
+        }));
     }
 
     @Override
@@ -136,17 +182,182 @@ public class JSONDatabase extends AbstractDatabase {
             if (!connected) {
                 throw new IllegalStateException("Not connected to database");
             }
+            return indexKeys();
+        });
+    }
+
+    @Override
+    protected List<String> indexKeys() throws IOException {
+        if (shards == null) {
             return new ArrayList<>(data.keySet());
+        }
+
+        List<String> keys = new ArrayList<>();
+        for (Map<String, Object> bucket : shards.all()) {
+            keys.addAll(bucket.keySet());
+        }
+        return keys;
+    }
+
+    @Override
+    protected void writeToFile() throws IOException {
+        if (log != null) {
+            log.flush(config.isFsync());
+            return;
+        }
+        if (shards != null) {
+            shards.flush(config.isFsync());
+            return;
+        }
+        writeSnapshot(data);
+    }
+
+    private Map<String, Object> bucket(String key) throws IOException {
+        return shards != null ? shards.bucket(key) : data;
+    }
+
+    // Moves an existing single-file database into the buckets. Keyed on the source file still
+    // being there, so a migration interrupted by a crash is redone on the next start
+    private void openShards() throws IOException {
+        shards.open();
+        if (!file.exists() || file.length() == 0) {
+            return;
+        }
+
+        Map<String, Object> existing = read(file.toPath());
+        for (Map.Entry<String, Object> entry : existing.entrySet()) {
+            shards.bucket(entry.getKey()).put(entry.getKey(), entry.getValue());
+            shards.markDirty(entry.getKey());
+        }
+        shards.flush(true);
+        Files.move(file.toPath(), file.toPath().resolveSibling(file.getName() + ".unsharded"),
+                StandardCopyOption.REPLACE_EXISTING);
+        logger.info("Migrated", existing.size(), "key(s) from", file.getName(), "into", config.getShards(), "shards");
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> TypeAdapter<T> adapter(Class<T> type) {
+        return (TypeAdapter<T>) adapters.computeIfAbsent(type, gson::getAdapter);
+    }
+
+    private Map<String, Object> read(Path path) throws IOException {
+        return compact ? readTrees(path) : readObjects(path);
+    }
+
+    private Map<String, Object> readObjects(Path path) throws IOException {
+        String content;
+        try (InputStream in = readData(path)) {
+            content = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        if (content.trim().isEmpty()) {
+            content = "{}";
+        }
+
+        TypeToken<Map<String, Object>> token = new TypeToken<Map<String, Object>>() {};
+        Map<String, Object> loaded = gson.fromJson(content, token.getType());
+        return loaded != null ? loaded : new HashMap<>();
+    }
+
+    // Parses one top-level entry at a time so the file is never held as a single string
+    private Map<String, Object> readTrees(Path path) throws IOException {
+        Map<String, Object> loaded = new HashMap<>();
+        if (Files.size(path) == 0) {
+            return loaded;
+        }
+
+        try (JsonReader reader = new JsonReader(new InputStreamReader(readData(path), StandardCharsets.UTF_8))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                loaded.put(reader.nextName(), JsonParser.parseReader(reader));
+            }
+            reader.endObject();
+        }
+        return loaded;
+    }
+
+    private void writeSnapshot(Map<String, Object> snapshot) throws IOException {
+        writeSnapshot(file.toPath(), snapshot, config.isFsync());
+    }
+
+    private void writeSnapshot(Path path, Map<String, Object> snapshot, boolean fsync) throws IOException {
+        if (!compact) {
+            byte[] json = gson.toJson(snapshot).getBytes(StandardCharsets.UTF_8);
+            writeData(path, fsync, out -> out.write(json));
+            return;
+        }
+
+        writeData(path, fsync, out -> {
+            // Only flushed, writeData finishes the stream
+            JsonWriter writer = new JsonWriter(new BufferedWriter(
+                    new OutputStreamWriter(out, StandardCharsets.UTF_8), STREAM_BUFFER_SIZE));
+            writer.beginObject();
+            for (Map.Entry<String, Object> entry : snapshot.entrySet()) {
+                writer.name(entry.getKey());
+                JsonElement value = (JsonElement) entry.getValue();
+                gson.toJson(value != null ? value : JsonNull.INSTANCE, writer);
+            }
+            writer.endObject();
+            writer.flush();
         });
     }
 
-    private void saveToFile() {
+    private void appendToLog(LogWrite write) {
         try {
-            String json = gson.toJson(data);
-            Files.write(file.toPath(), json.getBytes(StandardCharsets.UTF_8));
+            write.run();
         } catch (IOException e) {
-            logger.error(e, "Failed to save JSON data");
+            logger.error(e, "Failed to append to JSON mutation log");
             throw new RuntimeException(e);
         }
+
+        if (log.needsCompaction(data.size(), config.getCompactionMinRecords(), config.getCompactionRatio())) {
+            compactLog();
+        }
+    }
+
+    private void compactLog() {
+        // Detached from the callers' live objects here, the background thread only sees trees
+        Map<String, Object> snapshot = new HashMap<>(data.size());
+        for (Map.Entry<String, Object> entry : data.entrySet()) {
+            snapshot.put(entry.getKey(), compact ? entry.getValue() : gson.toJsonTree(entry.getValue()));
+        }
+        try {
+            log.beginCompaction();
+        } catch (IOException e) {
+            logger.error(e, "Failed to rotate JSON mutation log");
+            throw new RuntimeException(e);
+        }
+
+        JsonMutationLog compactingLog = log;
+        Thread.ofVirtual().name("JSON-compact-" + file.getName()).start(() -> {
+            boolean success = false;
+            try {
+                // The compacted segment is deleted next, so the snapshot must be on disk first
+                writeSnapshot(file.toPath(), snapshot, true);
+                success = true;
+                logger.debug("Compacted JSON mutation log:", file.getName(), "- Keys:", snapshot.size());
+            } catch (IOException e) {
+                logger.error(e, "Failed to compact JSON mutation log");
+            } finally {
+                try {
+                    compactingLog.finishCompaction(success);
+                } catch (IOException e) {
+                    logger.error(e, "Failed to remove compacted JSON log segment");
+                }
+            }
+        });
+    }
+
+    private void closeLog() {
+        try {
+            log.close();
+        } catch (IOException e) {
+            logger.error(e, "Failed to close JSON mutation log");
+        }
+        log = null;
+    }
+
+    @FunctionalInterface
+    private interface LogWrite {
+        void run() throws IOException;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,224 @@
+package org.extstudios.extcore.internal.database;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.extstudios.extcore.api.LoggingService;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+/**
+ * Append-only segment of per-key mutations for {@link JSONDatabase}. Each line is
+ * a compact JSON record, either {@code {"k":key,"v":value}} or {@code {"k":key,"d":1}}.
+ * Replaying the snapshot file, then the segment being compacted, then the active
+ * segment always rebuilds the latest state because every record is idempotent.
+ */
+public class JsonMutationLog implements Closeable {
+
+    private static final String KEY = "k";
+    private static final String VALUE = "v";
+    private static final String DELETED = "d";
+
+    private final Path activePath;
+    private final Path compactingPath;
+    private final LoggingService logger;
+    private final Gson gson;
+    private final boolean keepTrees;
+
+    private FileChannel channel;
+    private OutputStream out;
+    private long deadRecords;
+    private volatile boolean compacting;
+
+    public JsonMutationLog(File file, LoggingService logger) {
+        this(file, logger, false);
+    }
+
+    /**
+     * @param keepTrees replay values as {@link JsonElement}s instead of converting them
+     *                  to maps and lists, matching the compact JSON mode
+     */
+    public JsonMutationLog(File file, LoggingService logger, boolean keepTrees) {
+        this.activePath = new File(file.getPath() + ".log").toPath();
+        this.compactingPath = new File(file.getPath() + ".log.compacting").toPath();
+        this.logger = logger;
+        this.gson = new Gson();
+        this.keepTrees = keepTrees;
+    }
+
+    public void open(Map<String, Object> data) throws IOException {
+        deadRecords = 0;
+        replay(compactingPath, data);
+        replay(activePath, data);
+        openActive();
+    }
+
+    public void appendPut(String key, Object value, boolean replaced) throws IOException {
+        JsonObject record = new JsonObject();
+        record.addProperty(KEY, key);
+        record.add(VALUE, gson.toJsonTree(value));
+        write(record);
+        if (replaced) {
+            deadRecords++;
+        }
+    }
+
+    public void appendDelete(String key, boolean existed) throws IOException {
+        JsonObject record = new JsonObject();
+        record.addProperty(KEY, key);
+        record.addProperty(DELETED, 1);
+        write(record);
+        deadRecords += existed ? 2 : 1;
+    }
+
+    public void flush(boolean fsync) throws IOException {
+        if (out != null) {
+            out.flush();
+            if (fsync) {
+                channel.force(false);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (out != null) {
+            out.close();
+            out = null;
+            channel = null;
+        }
+    }
+
+    private void openActive() throws IOException {
+        channel = FileChannel.open(activePath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        out = new BufferedOutputStream(Channels.newOutputStream(channel));
+    }
+
+    public boolean needsCompaction(int liveRecords, int minRecords, double ratio) {
+        long total = liveRecords + deadRecords;
+        return !compacting && total >= minRecords && deadRecords >= total * ratio;
+    }
+
+    public boolean isCompacting() {
+        return compacting;
+    }
+
+    /**
+     * Seals the active segment so a snapshot can be written in the background while
+     * new mutations go to a fresh segment. A segment left over from a failed
+     * compaction is kept as is; the new snapshot covers it either way.
+     */
+    public void beginCompaction() throws IOException {
+        compacting = true;
+        close();
+        if (!Files.exists(compactingPath)) {
+            Files.move(activePath, compactingPath, StandardCopyOption.ATOMIC_MOVE);
+        }
+        openActive();
+        deadRecords = 0;
+    }
+
+    public void finishCompaction(boolean success) throws IOException {
+        try {
+            if (success) {
+                Files.deleteIfExists(compactingPath);
+            }
+        } finally {
+            compacting = false;
+        }
+    }
+
+    private void write(JsonObject record) throws IOException {
+        if (out == null) {
+            throw new IllegalStateException("Mutation log is not open");
+        }
+        out.write(gson.toJson(record).getBytes(StandardCharsets.UTF_8));
+        out.write('\n');
+    }
+
+    private void replay(Path segment, Map<String, Object> data) throws IOException {
+        if (!Files.exists(segment)) {
+            return;
+        }
+
+        long offset = 0;
+        long validEnd = 0;
+        int records = 0;
+        // Start of an unparseable line, only known to be mid-file corruption once another line follows
+        long corruptAt = -1;
+
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(segment))) {
+            ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+            int b;
+            while ((b = in.read()) != -1) {
+                offset++;
+                if (b != '\n') {
+                    line.write(b);
+                    continue;
+                }
+
+                if (corruptAt >= 0) {
+                    logger.error("Skipped corrupt record in", segment.getFileName(), "at byte", corruptAt);
+                    corruptAt = -1;
+                }
+                try {
+                    apply(line.toString(StandardCharsets.UTF_8), data);
+                    records++;
+                } catch (RuntimeException e) {
+                    corruptAt = validEnd;
+                }
+                validEnd = offset;
+                line.reset();
+            }
+        }
+
+        // Only the final line can be a torn write: drop it so new records start on a clean line
+        if (corruptAt >= 0) {
+            logger.warn("Dropping torn record at the end of", segment.getFileName(), "at byte", corruptAt);
+            validEnd = corruptAt;
+        }
+        if (validEnd < Files.size(segment)) {
+            try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+                channel.truncate(validEnd);
+            }
+        }
+
+        logger.debug("Replayed", records, "record(s) from", segment.getFileName());
+    }
+
+    private void apply(String line, Map<String, Object> data) {
+        if (line.isBlank()) {
+            return;
+        }
+
+        JsonObject record = JsonParser.parseString(line).getAsJsonObject();
+        String key = record.get(KEY).getAsString();
+
+        if (record.has(DELETED)) {
+            deadRecords += data.remove(key) != null ? 2 : 1;
+            return;
+        }
+
+        JsonElement value = record.get(VALUE);
+        Object previous = data.put(key, value == null || keepTrees ? value : gson.fromJson(value, Object.class));
+        if (previous != null) {
+            deadRecords++;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package org.extstudios.extcore.internal.database;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+/**
+ * Small weight-bounded LRU cache with an optional time-to-live. Backed by an
+ * access-ordered {@link LinkedHashMap} behind a single lock, which is plenty for
+ * the entry counts used by the database caches.
+ */
+public class LruCache<K, V> {
+
+    private final long maxWeight;
+    private final long ttlNanos;
+    private final ToIntFunction<? super V> weigher;
+    private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long weight;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public LruCache(long maxWeight, long ttlMillis, ToIntFunction<? super V> weigher) {
+        this.maxWeight = maxWeight;
+        this.ttlNanos = ttlMillis > 0 ? ttlMillis * 1_000_000L : 0;
+        this.weigher = weigher;
+    }
+
+    public LruCache(long maxSize, long ttlMillis) {
+        this(maxSize, ttlMillis, value -> 1);
+    }
+
+    public V get(K key) {
+        return get(key, value -> true);
+    }
+
+    // An entry the caller cannot use counts as a miss and reads as null, but stays cached
+    public V get(K key, Predicate<? super V> usable) {
+        synchronized (entries) {
+            Entry<V> entry = entries.get(key);
+            if (entry == null) {
+                misses.increment();
+                return null;
+            }
+            if (ttlNanos > 0 && System.nanoTime() - entry.createdAt > ttlNanos) {
+                entries.remove(key);
+                weight -= entry.weight;
+                misses.increment();
+                return null;
+            }
+            if (!usable.test(entry.value)) {
+                misses.increment();
+                return null;
+            }
+            hits.increment();
+            return entry.value;
+        }
+    }
+
+    public void put(K key, V value) {
+        int entryWeight = Math.max(weigher.applyAsInt(value), 0);
+        if (entryWeight > maxWeight) {
+            invalidate(key);
+            return;
+        }
+
+        synchronized (entries) {
+            Entry<V> previous = entries.put(key, new Entry<>(value, entryWeight, System.nanoTime()));
+            if (previous != null) {
+                weight -= previous.weight;
+            }
+            weight += entryWeight;
+
+            Iterator<Entry<V>> iterator = entries.values().iterator();
+            while (weight > maxWeight && iterator.hasNext()) {
+                Entry<V> eldest = iterator.next();
+                iterator.remove();
+                weight -= eldest.weight;
+                evictions.increment();
+            }
+        }
+    }
+
+    public void invalidate(K key) {
+        synchronized (entries) {
+            Entry<V> removed = entries.remove(key);
+            if (removed != null) {
+                weight -= removed.weight;
+            }
+        }
+    }
+
+    public void invalidateIf(Predicate<? super K> predicate) {
+        synchronized (entries) {
+            Iterator<Map.Entry<K, Entry<V>>> iterator = entries.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<K, Entry<V>> entry = iterator.next();
+                if (predicate.test(entry.getKey())) {
+                    iterator.remove();
+                    weight -= entry.getValue().weight;
+                }
+            }
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+            weight = 0;
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long weight() {
+        synchronized (entries) {
+            return weight;
+        }
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    public long evictionCount() {
+        return evictions.sum();
+    }
+
+    private record Entry<V>(V value, int weight, long createdAt) {
+    }
+}
@@ -0,0 +1,101 @@
+package org.extstudios.extcore.internal.database;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.PoolStats;
+import org.extstudios.extcore.api.database.ConnectionPoolStats;
+
+import java.util.concurrent.atomic.LongAdder;
+
+public class PoolMetrics implements ConnectionPoolStats, IMetricsTracker {
+
+    private final String poolName;
+    private volatile PoolStats poolStats;
+
+    private final LatencyHistogram acquire = new LatencyHistogram();
+    private final LongAdder timeouts = new LongAdder();
+
+    PoolMetrics(String poolName) {
+        this.poolName = poolName;
+    }
+
+    // A reconnect creates a new Hikari pool under the same name
+    PoolMetrics attach(PoolStats poolStats) {
+        this.poolStats = poolStats;
+        return this;
+    }
+
+    @Override
+    public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+        acquire.record(elapsedAcquiredNanos);
+    }
+
+    @Override
+    public void recordConnectionTimeout() {
+        timeouts.increment();
+    }
+
+    @Override
+    public void close() {
+        poolStats = null;
+    }
+
+    void reset() {
+        acquire.reset();
+        timeouts.reset();
+    }
+
+    @Override
+    public String getPoolName() {
+        return poolName;
+    }
+
+    @Override
+    public int getActiveConnections() {
+        PoolStats stats = poolStats;
+        return stats == null ? 0 : stats.getActiveConnections();
+    }
+
+    @Override
+    public int getIdleConnections() {
+        PoolStats stats = poolStats;
+        return stats == null ? 0 : stats.getIdleConnections();
+    }
+
+    @Override
+    public int getTotalConnections() {
+        PoolStats stats = poolStats;
+        return stats == null ? 0 : stats.getTotalConnections();
+    }
+
+    @Override
+    public int getMaxConnections() {
+        PoolStats stats = poolStats;
+        return stats == null ? 0 : stats.getMaxConnections();
+    }
+
+    @Override
+    public int getPendingThreads() {
+        PoolStats stats = poolStats;
+        return stats == null ? 0 : stats.getPendingThreads();
+    }
+
+    @Override
+    public long getAcquireCount() {
+        return acquire.getCount();
+    }
+
+    @Override
+    public long getTimeoutCount() {
+        return timeouts.sum();
+    }
+
+    @Override
+    public double getAverageAcquireMillis() {
+        return acquire.getAverageMillis();
+    }
+
+    @Override
+    public double getMaxAcquireMillis() {
+        return acquire.getMaxMillis();
+    }
+}
@@ -0,0 +1,89 @@
+package org.extstudios.extcore.internal.database;
+
+import org.extstudios.extcore.api.database.PreparedQuery;
+import org.extstudios.extcore.api.database.RowMapper;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+
+public class PreparedQueryImpl implements PreparedQuery {
+
+    private final SQLDatabase database;
+    private final String name;
+    private final String sql;
+    private final boolean idempotent;
+    private final StatementCacheTracker.Counter cacheCounter;
+
+    private final LongAdder executions = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+
+    PreparedQueryImpl(SQLDatabase database, String name, String sql, boolean idempotent,
+                      StatementCacheTracker.Counter cacheCounter) {
+        this.database = database;
+        this.name = name;
+        this.sql = sql;
+        this.idempotent = idempotent;
+        this.cacheCounter = cacheCounter;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String getSql() {
+        return sql;
+    }
+
+    @Override
+    public boolean isIdempotent() {
+        return idempotent;
+    }
+
+    @Override
+    public CompletableFuture<Integer> executeUpdate(Object... params) {
+        return track(database.executeUpdate(sql, params, idempotent));
+    }
+
+    @Override
+    public CompletableFuture<List<Map<String, Object>>> executeQuery(Object... params) {
+        return track(database.executeQuery(sql, params));
+    }
+
+    @Override
+    public <T> CompletableFuture<List<T>> executeQuery(RowMapper<T> mapper, Object... params) {
+        return track(database.executeQuery(sql, mapper, params));
+    }
+
+    @Override
+    public CompletableFuture<int[]> executeBatch(Iterable<Object[]> params) {
+        return track(database.executeBatch(sql, params, idempotent));
+    }
+
+    @Override
+    public long getExecutionCount() {
+        return executions.sum();
+    }
+
+    @Override
+    public double getAverageExecutionMillis() {
+        long count = executions.sum();
+        return count == 0 ? 0 : totalNanos.sum() / (count * 1_000_000.0);
+    }
+
+    @Override
+    public double getStatementCacheHitRate() {
+        return cacheCounter.getHitRate();
+    }
+
+    private <T> CompletableFuture<T> track(CompletableFuture<T> future) {
+        long start = System.nanoTime();
+        return future.whenComplete((result, error) -> {
+            executions.increment();
+            totalNanos.add(System.nanoTime() - start);
+        });
+    }
+}
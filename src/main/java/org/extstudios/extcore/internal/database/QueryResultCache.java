@@ -0,0 +1,186 @@
+package org.extstudios.extcore.internal.database;
+
+import org.extstudios.extcore.api.database.QueryCacheConfig;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Caches SELECT results by normalized SQL and parameters. Every entry is tagged
+ * with the tables its statement reads, and writes evict all entries that share a
+ * table with them. A result is only stored if no invalidation happened while the
+ * query was running, so a slow read can never put back data a write just replaced.
+ */
+public class QueryResultCache {
+
+    private static final String NAME = "(?:[`\"\\[]?\\w+[`\"\\]]?\\.)?[`\"\\[]?\\w+[`\"\\]]?";
+    // A table reference, or a comma-separated list of them with optional aliases as in FROM a x, b y.
+    // ON DUPLICATE KEY UPDATE, DO UPDATE and FOR UPDATE are followed by columns or lock options, not tables
+    private static final Pattern TABLE = Pattern.compile(
+            "\\b(?:FROM|JOIN|(?<!KEY |DO |FOR )UPDATE|INTO|TRUNCATE\\s+TABLE|TABLE|TRUNCATE)\\s+(" + NAME
+                    + "(?:(?:\\s+(?:AS\\s+)?\\w+)?\\s*,\\s*" + NAME + ")*)",
+            Pattern.CASE_INSENSITIVE);
+    private static final int MAX_PARSED_STATEMENTS = 1024;
+
+    private final int maxResultRows;
+    private final LruCache<Key, List<Map<String, Object>>> results;
+    private final Map<String, Statement> statements = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+
+    public QueryResultCache(QueryCacheConfig config) {
+        this.maxResultRows = config.getMaxResultRows();
+        this.results = new LruCache<>(config.getMaxEntries(), config.getTtl());
+    }
+
+    public Key keyFor(String sql, Object[] params) {
+        Statement statement = parse(sql);
+        if (!statement.cacheable) {
+            return null;
+        }
+        for (Object param : params) {
+            if (param != null && param.getClass().isArray()) {
+                return null;
+            }
+        }
+        return new Key(statement.normalized, Arrays.asList(params.clone()), statement.tables);
+    }
+
+    public List<Map<String, Object>> get(Key key) {
+        List<Map<String, Object>> rows = results.get(key);
+        return rows == null ? null : copyRows(rows);
+    }
+
+    public long generation() {
+        return generation.get();
+    }
+
+    public List<Map<String, Object>> put(Key key, List<Map<String, Object>> rows, long startGeneration) {
+        if (rows.size() <= maxResultRows && generation.get() == startGeneration) {
+            results.put(key, copyRows(rows));
+        }
+        return rows;
+    }
+
+    // Rows are mutable, so the cache keeps its own copies and hands out fresh ones
+    private static List<Map<String, Object>> copyRows(List<Map<String, Object>> rows) {
+        List<Map<String, Object>> copy = new ArrayList<>(rows.size());
+        for (Map<String, Object> row : rows) {
+            copy.add(row instanceof ResultRow resultRow ? resultRow.copy() : new HashMap<>(row));
+        }
+        return copy;
+    }
+
+    // Statements whose tables cannot be determined clear everything rather than risk stale reads
+    public void invalidate(String sql) {
+        Set<String> tables = parse(sql).tables;
+        if (tables.isEmpty()) {
+            invalidateAll();
+        } else {
+            invalidateTables(tables);
+        }
+    }
+
+    public void invalidateTables(Set<String> tables) {
+        if (tables.isEmpty()) {
+            return;
+        }
+        generation.incrementAndGet();
+        results.invalidateIf(key -> !Collections.disjoint(key.tables, tables));
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        results.clear();
+    }
+
+    public Set<String> tablesOf(String sql) {
+        return parse(sql).tables;
+    }
+
+    // Uncached variant for callers without a result cache
+    public static Set<String> parseTables(String sql) {
+        return Statement.parse(sql).tables;
+    }
+
+    // Drops the alias, quoting and schema qualifier of a table reference
+    public static String tableName(String reference) {
+        String name = reference.trim().split("\\s+")[0].replaceAll("[`\"\\[\\]]", "").toLowerCase(Locale.ROOT);
+        return name.substring(name.lastIndexOf('.') + 1);
+    }
+
+    private Statement parse(String sql) {
+        Statement statement = statements.get(sql);
+        if (statement == null) {
+            if (statements.size() >= MAX_PARSED_STATEMENTS) {
+                statements.clear();
+            }
+            statement = Statement.parse(sql);
+            statements.put(sql, statement);
+        }
+        return statement;
+    }
+
+    public record Key(String sql, List<Object> params, Set<String> tables) {
+    }
+
+    private record Statement(String normalized, Set<String> tables, boolean cacheable) {
+
+        static Statement parse(String sql) {
+            String normalized = normalize(sql);
+
+            Set<String> tables = new HashSet<>();
+            Matcher matcher = TABLE.matcher(stripLiterals(normalized));
+            while (matcher.find()) {
+                for (String reference : matcher.group(1).split(",")) {
+                    tables.add(tableName(reference));
+                }
+            }
+
+            String upper = normalized.toUpperCase(Locale.ROOT);
+            boolean cacheable = upper.startsWith("SELECT ")
+                    && !upper.contains(" FOR UPDATE")
+                    && !tables.isEmpty();
+            return new Statement(normalized, Set.copyOf(tables), cacheable);
+        }
+
+        // Collapses whitespace outside of quoted literals
+        private static String normalize(String sql) {
+            StringBuilder builder = new StringBuilder(sql.length());
+            char quote = 0;
+            boolean pendingSpace = false;
+            for (int i = 0; i < sql.length(); i++) {
+                char c = sql.charAt(i);
+                if (quote == 0 && Character.isWhitespace(c)) {
+                    pendingSpace = builder.length() > 0;
+                    continue;
+                }
+                if (pendingSpace) {
+                    builder.append(' ');
+                    pendingSpace = false;
+                }
+                if (quote == 0 && (c == '\'' || c == '"' || c == '`')) {
+                    quote = c;
+                } else if (c == quote) {
+                    quote = 0;
+                }
+                builder.append(c);
+            }
+            return builder.toString();
+        }
+
+        private static String stripLiterals(String sql) {
+            return sql.replaceAll("'(?:[^']|'')*'", "''");
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package org.extstudios.extcore.internal.database;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import org.extstudios.extcore.api.database.ExportFormat;
+import org.extstudios.extcore.api.database.RowMapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.sql.Array;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Writes each row straight from the result set to the output as it is read, so an
+ * export never holds more than the current row in memory.
+ */
+public class ResultExporter implements RowMapper<Void> {
+
+    private final Writer writer;
+    private final ExportFormat format;
+    private final Gson gson;
+    private String[] labels;
+
+    ResultExporter(Writer writer, ExportFormat format, Gson gson) {
+        this.writer = writer;
+        this.format = format;
+        this.gson = gson;
+    }
+
+    @Override
+    public RowMapper<Void> bind(ResultSetMetaData meta) throws SQLException {
+        labels = new String[meta.getColumnCount()];
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = meta.getColumnLabel(i + 1);
+        }
+
+        if (format == ExportFormat.CSV) {
+            try {
+                for (int i = 0; i < labels.length; i++) {
+                    writer.write(i == 0 ? "" : ",");
+                    writer.write(csv(labels[i]));
+                }
+                writer.write("\r\n");
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return this;
+    }
+
+    @Override
+    public Void map(ResultSet rs) throws SQLException {
+        if (labels == null) {
+            bind(rs.getMetaData());
+        }
+
+        try {
+            if (format == ExportFormat.CSV) {
+                for (int i = 0; i < labels.length; i++) {
+                    writer.write(i == 0 ? "" : ",");
+                    writer.write(csv(text(plain(rs.getObject(i + 1)))));
+                }
+                writer.write("\r\n");
+            } else {
+                JsonObject row = new JsonObject();
+                for (int i = 0; i < labels.length; i++) {
+                    row.add(labels[i], json(plain(rs.getObject(i + 1))));
+                }
+                gson.toJson(row, writer);
+                writer.write('\n');
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return null;
+    }
+
+    /**
+     * Reduces driver values to strings, numbers, booleans and lists. Gson cannot reflect
+     * into java.time and other JDK types on Java 17+, so nothing else may reach it.
+     */
+    private static Object plain(Object value) throws SQLException {
+        if (value == null || value instanceof String || value instanceof Number || value instanceof Boolean) {
+            return value;
+        }
+        if (value instanceof byte[] bytes) {
+            return Base64.getEncoder().encodeToString(bytes);
+        }
+        // The java.sql date types print in JDBC escape format, the java.time ones as ISO-8601
+        if (value instanceof Timestamp timestamp) {
+            return timestamp.toLocalDateTime().toString();
+        }
+        if (value instanceof java.sql.Date date) {
+            return date.toLocalDate().toString();
+        }
+        if (value instanceof Time time) {
+            return time.toLocalTime().toString();
+        }
+        if (value instanceof Blob blob) {
+            return Base64.getEncoder().encodeToString(blob.getBytes(1, (int) blob.length()));
+        }
+        if (value instanceof Clob clob) {
+            return clob.getSubString(1, (int) clob.length());
+        }
+        if (value instanceof Array array) {
+            Object elements = array.getArray();
+            List<Object> list = new ArrayList<>();
+            for (int i = 0; i < java.lang.reflect.Array.getLength(elements); i++) {
+                list.add(plain(java.lang.reflect.Array.get(elements, i)));
+            }
+            return list;
+        }
+        return value.toString();
+    }
+
+    private static JsonElement json(Object value) {
+        if (value == null) {
+            return JsonNull.INSTANCE;
+        }
+        if (value instanceof Number number) {
+            return new JsonPrimitive(number);
+        }
+        if (value instanceof Boolean bool) {
+            return new JsonPrimitive(bool);
+        }
+        if (value instanceof List<?> list) {
+            JsonArray array = new JsonArray();
+            list.forEach(element -> array.add(json(element)));
+            return array;
+        }
+        return new JsonPrimitive(value.toString());
+    }
+
+    private static String text(Object value) {
+        return value == null ? "" : value.toString();
+    }
+
+    private static String csv(String value) {
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        return quote ? '"' + value.replace("\"", "\"\"") + '"' : value;
+    }
+}
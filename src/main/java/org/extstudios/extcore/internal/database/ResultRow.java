@@ -0,0 +1,271 @@
+package org.extstudios.extcore.internal.database;
+
+import org.extstudios.extcore.api.database.RowMapper;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Row of a query result. All rows of one result share a single {@link Columns}
+ * table, so a row only holds its values. Rows stay mutable like the plain maps they
+ * replace: columns the result did not have go to a small overflow map.
+ */
+public final class ResultRow extends AbstractMap<String, Object> {
+
+    static final RowMapper<Map<String, Object>> MAPPER = new RowMapper<>() {
+        @Override
+        public Map<String, Object> map(ResultSet rs) throws SQLException {
+            return bind(rs.getMetaData()).map(rs);
+        }
+
+        @Override
+        public RowMapper<Map<String, Object>> bind(ResultSetMetaData meta) throws SQLException {
+            Columns columns = Columns.of(meta);
+            return rs -> read(columns, rs);
+        }
+    };
+
+    // Marks a result column that was removed from this row
+    private static final Object REMOVED = new Object();
+
+    private final Columns columns;
+    private final Object[] values;
+    private int removed;
+    private Map<String, Object> extra;
+
+    private ResultRow(Columns columns, Object[] values) {
+        this.columns = columns;
+        this.values = values;
+    }
+
+    static ResultRow read(Columns columns, ResultSet rs) throws SQLException {
+        Object[] values = new Object[columns.count];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = rs.getObject(i + 1);
+        }
+        return new ResultRow(columns, values);
+    }
+
+    // Independent copy, shares only the column table
+    ResultRow copy() {
+        ResultRow copy = new ResultRow(columns, values.clone());
+        copy.removed = removed;
+        copy.extra = extra == null ? null : new HashMap<>(extra);
+        return copy;
+    }
+
+    public Object get(int index) {
+        Object value = values[index];
+        return value == REMOVED ? null : value;
+    }
+
+    public int getColumnCount() {
+        return values.length;
+    }
+
+    @Override
+    public Object get(Object key) {
+        Integer index = columns.index.get(key);
+        if (index != null) {
+            Object value = values[index];
+            return value == REMOVED ? null : value;
+        }
+        return extra == null ? null : extra.get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        Integer index = columns.index.get(key);
+        if (index != null) {
+            return values[index] != REMOVED;
+        }
+        return extra != null && extra.containsKey(key);
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        Integer index = columns.index.get(key);
+        if (index == null) {
+            if (extra == null) {
+                extra = new HashMap<>();
+            }
+            return extra.put(key, value);
+        }
+
+        Object old = values[index];
+        values[index] = value;
+        if (old == REMOVED) {
+            removed--;
+            return null;
+        }
+        return old;
+    }
+
+    @Override
+    public Object remove(Object key) {
+        Integer index = columns.index.get(key);
+        if (index == null) {
+            return extra == null ? null : extra.remove(key);
+        }
+
+        Object old = values[index];
+        if (old == REMOVED) {
+            return null;
+        }
+        values[index] = REMOVED;
+        removed++;
+        return old;
+    }
+
+    @Override
+    public int size() {
+        return columns.names.length - removed + (extra == null ? 0 : extra.size());
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<String, Object>> iterator() {
+                return new Iterator<>() {
+                    private int next = skipRemoved(0);
+                    private int last = -1;
+                    private Iterator<Entry<String, Object>> extraEntries;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < columns.names.length || extraEntries().hasNext();
+                    }
+
+                    @Override
+                    public Entry<String, Object> next() {
+                        if (next >= columns.names.length) {
+                            last = -1;
+                            return extraEntries().next();
+                        }
+                        last = columns.index.get(columns.names[next]);
+                        Entry<String, Object> entry = new ColumnEntry(columns.names[next], last);
+                        next = skipRemoved(next + 1);
+                        return entry;
+                    }
+
+                    @Override
+                    public void remove() {
+                        if (last < 0) {
+                            extraEntries().remove();
+                            return;
+                        }
+                        if (values[last] == REMOVED) {
+                            throw new IllegalStateException();
+                        }
+                        values[last] = REMOVED;
+                        removed++;
+                    }
+
+                    private Iterator<Entry<String, Object>> extraEntries() {
+                        if (extraEntries == null) {
+                            extraEntries = extra == null ? Collections.emptyIterator() : extra.entrySet().iterator();
+                        }
+                        return extraEntries;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return ResultRow.this.size();
+            }
+        };
+    }
+
+    private int skipRemoved(int position) {
+        while (position < columns.names.length && values[columns.index.get(columns.names[position])] == REMOVED) {
+            position++;
+        }
+        return position;
+    }
+
+    private final class ColumnEntry implements Entry<String, Object> {
+
+        private final String name;
+        private final int index;
+
+        private ColumnEntry(String name, int index) {
+            this.name = name;
+            this.index = index;
+        }
+
+        @Override
+        public String getKey() {
+            return name;
+        }
+
+        @Override
+        public Object getValue() {
+            Object value = values[index];
+            return value == REMOVED ? null : value;
+        }
+
+        @Override
+        public Object setValue(Object value) {
+            Object old = getValue();
+            if (values[index] == REMOVED) {
+                removed--;
+            }
+            values[index] = value;
+            return old;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Entry<?, ?> entry
+                    && name.equals(entry.getKey()) && Objects.equals(getValue(), entry.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return name.hashCode() ^ Objects.hashCode(getValue());
+        }
+    }
+
+    static final class Columns {
+
+        private final int count;
+        private final String[] names;
+        private final Map<String, Integer> index;
+
+        private Columns(int count, String[] names, Map<String, Integer> index) {
+            this.count = count;
+            this.names = names;
+            this.index = index;
+        }
+
+        static Columns of(ResultSetMetaData meta) throws SQLException {
+            int count = meta.getColumnCount();
+            Map<String, Integer> index = new HashMap<>(count * 2);
+            for (int i = 0; i < count; i++) {
+                index.put(meta.getColumnName(i + 1), i);
+            }
+
+            // Duplicate names keep the last column, matching the previous HashMap rows
+            String[] names = new String[index.size()];
+            int n = 0;
+            for (int i = 0; i < count; i++) {
+                String name = meta.getColumnName(i + 1);
+                if (index.get(name) == i) {
+                    names[n++] = name;
+                }
+            }
+            return new Columns(count, names, index);
+        }
+    }
+}
@@ -1,31 +1,112 @@
 package org.extstudios.extcore.internal.database;
 
+import com.google.gson.Gson;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
 import org.bukkit.plugin.Plugin;
 import org.extstudios.extcore.api.database.DatabaseType;
+import org.extstudios.extcore.api.database.ExportFormat;
+import org.extstudios.extcore.api.database.IsolationLevel;
+import org.extstudios.extcore.api.database.Page;
+import org.extstudios.extcore.api.database.PerformanceProfile;
+import org.extstudios.extcore.api.database.PreparedQuery;
+import org.extstudios.extcore.api.database.ReplicaEndpoint;
+import org.extstudios.extcore.api.database.ReplicaRouting;
+import org.extstudios.extcore.api.database.RetryPolicy;
+import org.extstudios.extcore.api.database.RowMapper;
 import org.extstudios.extcore.api.database.SQLConfig;
+import org.extstudios.extcore.api.database.TransactionContext;
+import org.extstudios.extcore.api.database.TransactionOptions;
 import org.extstudios.extcore.api.LoggingService;
 import org.extstudios.extcore.api.task.TaskService;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.*;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
 
 public class SQLDatabase extends AbstractDatabase {
 
+    private static final List<String> KV_COLUMNS = List.of("kv_key", "kv_value");
+    private static final List<String> KV_KEY_COLUMNS = List.of("kv_key");
+    private static final int MAX_PRIMARY_PINS = 1024;
+    // Pinned for writes whose tables could not be determined
+    private static final String ANY_TABLE = "*";
+    // Queries that may write, such as INSERT ... RETURNING or a data-modifying WITH
+    private static final Pattern READ_ONLY_QUERY = Pattern.compile("^\\s*(?:SELECT|WITH)\\b", Pattern.CASE_INSENSITIVE);
+    private static final Pattern WRITING_KEYWORD = Pattern.compile(
+            "\\b(?:INSERT|UPDATE|DELETE|MERGE|UPSERT|REPLACE|INTO|CALL)\\b", Pattern.CASE_INSENSITIVE);
+
     private final DatabaseType type;
+    private final SQLDialect dialect;
     private final SQLConfig config;
     private HikariDataSource dataSource;
 
+    private final Gson gson;
+    private final String kvTable;
+    private final String kvTableName;
+    private final LruCache<String, Optional<String>> kvCache;
+    private final AtomicLong kvGeneration = new AtomicLong();
+    private volatile boolean kvTableReady;
+
+    private final QueryResultCache queryCache;
+
+    private final Map<String, PreparedQueryImpl> preparedQueries = new ConcurrentHashMap<>();
+    private final StatementCacheTracker statementCache;
+
+    private volatile Map<String, String> driverProperties = Map.of();
+
+    // SQLite split mode, null when all work shares dataSource
+    private HikariDataSource readDataSource;
+    private SQLiteWriter writer;
+
+    private volatile List<HikariDataSource> replicaSources = List.of();
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    // Read-your-writes: written table or key-value key -> nanoTime until which reads of it stay on the primary
+    private final Map<String, Long> tablePins = new ConcurrentHashMap<>();
+    private final Map<String, Long> keyPins = new ConcurrentHashMap<>();
+
     public SQLDatabase(Plugin plugin, DatabaseType type, SQLConfig config,
-                       LoggingService logger, TaskService taskService) {
-        super(plugin, logger, taskService);
+                       LoggingService logger, TaskService taskService, DatabaseExecutor executor) {
+        super(plugin, type, logger, taskService, executor);
         this.type = type;
+        this.dialect = SQLDialect.of(type);
         this.config = config;
+        this.gson = new Gson();
+        this.kvTable = dialect.quote(config.getKeyValueTable());
+        this.kvTableName = QueryResultCache.tableName(config.getKeyValueTable());
+        this.kvCache = config.getKeyValueCacheSize() > 0
+                ? new LruCache<>(config.getKeyValueCacheSize(), config.getKeyValueCacheTtl())
+                : null;
+        this.queryCache = config.getQueryCache() != null
+                ? new QueryResultCache(config.getQueryCache())
+                : null;
+        this.statementCache = new StatementCacheTracker();
+        this.metrics.setSlowQueryThreshold(config.getSlowQueryThreshold());
     }
 
     @Override
@@ -35,24 +116,18 @@ public class SQLDatabase extends AbstractDatabase {
 
     @Override
     public CompletableFuture<Void> connect() {
-        return executeAsyncVoid(() -> {
+        return executeLifecycle(() -> {
             try {
                 HikariConfig hikariConfig = new HikariConfig();
 
                 switch (type) {
                     case MYSQL:
-                        hikariConfig.setJdbcUrl(String.format(
-                                "jdbc:mysql://%s:%d/%s?useSSL=false&serverTimezone=UTC",
-                                config.getHost(), config.getPort(), config.getDatabase()
-                        ));
+                        hikariConfig.setJdbcUrl(jdbcUrl(config.getHost(), config.getPort()));
                         hikariConfig.setDriverClassName("com.mysql.cj.jdbc.Driver");
                         break;
 
                     case POSTGRESQL:
-                        hikariConfig.setJdbcUrl(String.format(
-                                "jdbc:postgresql://%s:%d/%s",
-                                config.getHost(), config.getPort(), config.getDatabase()
-                        ));
+                        hikariConfig.setJdbcUrl(jdbcUrl(config.getHost(), config.getPort()));
                         hikariConfig.setDriverClassName("org.postgresql.Driver");
                         break;
 
@@ -78,9 +153,57 @@ public class SQLDatabase extends AbstractDatabase {
                 hikariConfig.setAutoCommit(config.isAutoCommit());
                 hikariConfig.setPoolName(plugin.getName() + "-" + type.name() + "-Pool");
                 hikariConfig.setConnectionTestQuery("SELECT 1");
+                hikariConfig.setMetricsTrackerFactory(metrics);
+
+                driverProperties = resolveDriverProperties();
+                statementCache.setCacheSize(trackedStatementCacheSize(driverProperties));
+                driverProperties.forEach(hikariConfig::addDataSourceProperty);
+
+                if (isSplitMode()) {
+                    HikariConfig readConfig = new HikariConfig();
+                    hikariConfig.copyStateTo(readConfig);
+                    readConfig.setPoolName(plugin.getName() + "-" + type.name() + "-ReadPool");
+                    readConfig.setMinimumIdle(Math.min(config.getMinimumIdle(), config.getReadPoolSize()));
+                    readConfig.setMaximumPoolSize(config.getReadPoolSize());
+
+                    hikariConfig.setPoolName(plugin.getName() + "-" + type.name() + "-WritePool");
+                    hikariConfig.setMinimumIdle(1);
+                    hikariConfig.setMaximumPoolSize(1);
+
+                    readDataSource = new HikariDataSource(readConfig);
+                }
+
+                List<HikariConfig> replicaConfigs = new ArrayList<>();
+                if (type != DatabaseType.SQLITE) {
+                    List<ReplicaEndpoint> replicas = config.getReplicas();
+                    for (int i = 0; i < replicas.size(); i++) {
+                        HikariConfig replicaConfig = new HikariConfig();
+                        hikariConfig.copyStateTo(replicaConfig);
+                        replicaConfig.setJdbcUrl(jdbcUrl(replicas.get(i).host(), replicas.get(i).port()));
+                        replicaConfig.setPoolName(plugin.getName() + "-" + type.name() + "-Replica-" + (i + 1));
+                        replicaConfig.setReadOnly(true);
+                        replicaConfigs.add(replicaConfig);
+                    }
+                }
 
                 dataSource = new HikariDataSource(hikariConfig);
 
+                List<HikariDataSource> replicaPools = new ArrayList<>();
+                for (HikariConfig replicaConfig : replicaConfigs) {
+                    try {
+                        replicaPools.add(new HikariDataSource(replicaConfig));
+                    } catch (RuntimeException e) {
+                        // A missing replica only costs read capacity, the primary still serves everything
+                        logger.warn(e, "Failed to connect to replica", replicaConfig.getPoolName(), "- skipping it");
+                    }
+                }
+                replicaSources = List.copyOf(replicaPools);
+
+                if (isSplitMode()) {
+                    writer = new SQLiteWriter(hikariConfig.getPoolName(), dataSource, logger,
+                            config.isGroupCommit(), config.getGroupCommitSize());
+                }
+
                 try (Connection conn = dataSource.getConnection()) {
                     if (conn == null || !conn.isValid(5)) {
                         throw new SQLException("Failed to validate connection");
@@ -89,7 +212,17 @@ public class SQLDatabase extends AbstractDatabase {
 
                 connected = true;
                 logger.info("Connected to", type.name(), "database with HikariCP pool");
-                logger.debug("Pool size:", config.getMinimumIdle(), "-", config.getMaximumPoolSize());
+                if (isSplitMode()) {
+                    logger.debug("Split pool: 1 writer,", config.getReadPoolSize(), "readers - Group commit:",
+                            config.isGroupCommit());
+                } else {
+                    logger.debug("Pool size:", config.getMinimumIdle(), "-", config.getMaximumPoolSize());
+                }
+                if (!replicaSources.isEmpty()) {
+                    logger.info("Routing reads over", replicaSources.size(), "replicas -",
+                            config.getReplicaRouting().name());
+                }
+                logger.info("Applied", config.getPerformanceProfile().name(), "driver settings:", describe(driverProperties));
 
             } catch (Exception e) {
                 logger.error(e, "Failed to connect to SQL database");
@@ -100,10 +233,20 @@ public class SQLDatabase extends AbstractDatabase {
 
     @Override
     public CompletableFuture<Void> disconnect() {
-        return executeAsyncVoid(() -> {
+        return executeLifecycle(() -> {
             if (connected && dataSource != null) {
                 dataSource.close();
                 dataSource = null;
+                if (readDataSource != null) {
+                    readDataSource.close();
+                    readDataSource = null;
+                }
+                replicaSources.forEach(HikariDataSource::close);
+                replicaSources = List.of();
+                tablePins.clear();
+                keyPins.clear();
+                writer = null;
+                statementCache.clear();
                 connected = false;
                 logger.info("Disconnected from", type.name(), "database");
             }
@@ -123,21 +266,238 @@ public class SQLDatabase extends AbstractDatabase {
         }
     }
 
+    private Connection getReadConnection(boolean primary) throws SQLException {
+        HikariDataSource source = readDataSource;
+        if (source != null) {
+            return source.getConnection();
+        }
+
+        List<HikariDataSource> replicas = replicaSources;
+        if (!primary && !replicas.isEmpty()) {
+            HikariDataSource replica = selectReplica(replicas);
+            try {
+                return replica.getConnection();
+            } catch (SQLException e) {
+                logger.debug("Replica", replica.getPoolName(), "unavailable, reading from primary:", e.getMessage());
+            }
+        }
+        return openConnection();
+    }
+
+    private HikariDataSource selectReplica(List<HikariDataSource> replicas) {
+        if (config.getReplicaRouting() == ReplicaRouting.LEAST_BUSY) {
+            HikariDataSource best = replicas.get(0);
+            int bestLoad = Integer.MAX_VALUE;
+            for (HikariDataSource replica : replicas) {
+                HikariPoolMXBean pool = replica.getHikariPoolMXBean();
+                int load = pool == null ? Integer.MAX_VALUE - 1
+                        : pool.getActiveConnections() + pool.getThreadsAwaitingConnection();
+                if (load < bestLoad) {
+                    best = replica;
+                    bestLoad = load;
+                }
+            }
+            return best;
+        }
+        return replicas.get(Math.floorMod(nextReplica.getAndIncrement(), replicas.size()));
+    }
+
+    // Must be called before the read is submitted
+    private boolean isPinnedToPrimary(String sql) {
+        if (tablePins.isEmpty() && keyPins.isEmpty()) {
+            return false;
+        }
+        return isPinnedToPrimary(tablesOf(sql));
+    }
+
+    private boolean isPinnedToPrimary(Set<String> tables) {
+        if (tablePins.isEmpty() && keyPins.isEmpty()) {
+            return false;
+        }
+        if (tables.isEmpty()) {
+            // The read's tables are unknown, so any recent write may matter
+            return hasLivePin(tablePins) || hasLivePin(keyPins);
+        }
+        if (isPinned(tablePins, ANY_TABLE)) {
+            return true;
+        }
+        for (String table : tables) {
+            if (isPinned(tablePins, table) || table.equals(kvTableName) && hasLivePin(keyPins)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isKeyPinned(String key) {
+        if (tablePins.isEmpty() && keyPins.isEmpty()) {
+            return false;
+        }
+        return isPinned(keyPins, key) || isPinned(tablePins, kvTableName) || isPinned(tablePins, ANY_TABLE);
+    }
+
+    private static boolean isPinned(Map<String, Long> pins, String name) {
+        Long until = pins.get(name);
+        if (until == null) {
+            return false;
+        }
+        if (until - System.nanoTime() > 0) {
+            return true;
+        }
+        pins.remove(name, until);
+        return false;
+    }
+
+    private static boolean hasLivePin(Map<String, Long> pins) {
+        long now = System.nanoTime();
+        for (long until : pins.values()) {
+            if (until - now > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Keeps reads of the written tables on the primary until the window after the write
+     * completes. The pin is in place before the returned future completes, which is the
+     * earliest a caller can depend on the write, and only affects reads of those tables.
+     */
+    private <T> CompletableFuture<T> pinTables(CompletableFuture<T> write, Supplier<Set<String>> tables) {
+        if (!isReadYourWrites()) {
+            return write;
+        }
+        return write.whenComplete((result, error) -> {
+            Set<String> written = tables.get();
+            pin(tablePins, written.isEmpty() ? Set.of(ANY_TABLE) : written);
+        });
+    }
+
+    private <T> CompletableFuture<T> pinKey(CompletableFuture<T> write, String key) {
+        if (!isReadYourWrites()) {
+            return write;
+        }
+        return write.whenComplete((result, error) -> pin(keyPins, Set.of(key)));
+    }
+
+    private boolean isReadYourWrites() {
+        return config.getReadYourWritesWindow() > 0 && !replicaSources.isEmpty();
+    }
+
+    private void pin(Map<String, Long> pins, Set<String> names) {
+        long now = System.nanoTime();
+        if (pins.size() > MAX_PRIMARY_PINS) {
+            pins.values().removeIf(until -> until - now <= 0);
+        }
+        long until = now + TimeUnit.MILLISECONDS.toNanos(config.getReadYourWritesWindow());
+        names.forEach(name -> pins.put(name, until));
+    }
+
+    private Set<String> tablesOf(String sql) {
+        return queryCache != null ? queryCache.tablesOf(sql) : QueryResultCache.parseTables(sql);
+    }
+
+    private String jdbcUrl(String host, int port) {
+        if (type == DatabaseType.MYSQL) {
+            return String.format("jdbc:mysql://%s:%d/%s?useSSL=false&serverTimezone=UTC", host, port, config.getDatabase());
+        }
+        return String.format("jdbc:postgresql://%s:%d/%s", host, port, config.getDatabase());
+    }
+
+    // Unlike getConnection(), lets pool failures surface so they can be classified
+    private Connection openConnection() throws SQLException {
+        HikariDataSource source = dataSource;
+        if (!connected || source == null) {
+            throw new IllegalStateException("Not connected to database");
+        }
+        return source.getConnection();
+    }
+
+    // Runs on the writer queue in SQLite split mode, otherwise on a pooled connection
+    private <T> T write(SQLWork<T> work, boolean groupable) throws SQLException {
+        SQLiteWriter currentWriter = writer;
+        if (currentWriter != null) {
+            return currentWriter.execute(work, groupable);
+        }
+        try (Connection conn = openConnection()) {
+            return work.execute(conn);
+        }
+    }
+
+    // Re-runs idempotent work after transient failures with jittered exponential backoff
+    private <T> T retrying(boolean idempotent, SQLCall<T> call) throws SQLException {
+        RetryPolicy policy = config.getRetryPolicy();
+        if (!idempotent || policy == null || policy.getMaxAttempts() <= 1) {
+            return call.call();
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(policy.getDeadline());
+        double backoff = policy.getInitialBackoff();
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                T result = call.call();
+                if (attempt > 1) {
+                    metrics.recordRetrySuccess();
+                }
+                return result;
+
+            } catch (SQLException | RuntimeException e) {
+                SQLException cause = findSQLException(e);
+                if (attempt >= policy.getMaxAttempts() || cause == null || !dialect.isTransient(cause)) {
+                    throw e;
+                }
+
+                // Half fixed, half random so that callers failing together do not retry together
+                long capped = (long) Math.min(backoff, policy.getMaxBackoff());
+                long delay = capped / 2 + ThreadLocalRandom.current().nextLong(capped / 2 + 1);
+                if (System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay) > deadline) {
+                    throw e;
+                }
+
+                metrics.recordRetry();
+                logger.debug("Transient failure, retrying in", delay + "ms (attempt", attempt + "):", cause.getMessage());
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+                backoff *= policy.getMultiplier();
+            }
+        }
+    }
+
+    private static SQLException findSQLException(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException sqlException) {
+                return sqlException;
+            }
+        }
+        return null;
+    }
+
+    private boolean isSplitMode() {
+        return type == DatabaseType.SQLITE && config.getReadPoolSize() > 0;
+    }
+
     @Override
     public CompletableFuture<Integer> executeUpdate(String sql, Object... params) {
-        return executeAsync(() -> {
+        return executeUpdate(sql, params, false);
+    }
+
+    CompletableFuture<Integer> executeUpdate(String sql, Object[] params, boolean idempotent) {
+        return pinTables(executeAsync(() -> {
             if (!connected) {
                 throw new IllegalStateException("Not connected to database");
             }
 
-            try (Connection conn = getConnection();
-                 PreparedStatement stmt = conn.prepareStatement(sql)) {
-
-                for (int i = 0; i < params.length; i++) {
-                    stmt.setObject(i + 1, params[i]);
+            try {
+                int rows = retrying(idempotent, () -> write(conn -> update(conn, sql, params), true));
+                if (writer != null && queryCache != null) {
+                    // A grouped write commits after update() already evicted the cache
+                    queryCache.invalidate(sql);
                 }
-
-                int rows = stmt.executeUpdate();
                 logger.debug("Executed update:", sql, "- Rows affected:", rows);
                 return rows;
 
@@ -145,50 +505,785 @@ public class SQLDatabase extends AbstractDatabase {
                 logger.error(e, "Failed to execute update:", sql);
                 throw new RuntimeException(e);
             }
-        });
+        }), () -> tablesOf(sql));
     }
 
     @Override
     public CompletableFuture<List<Map<String, Object>>> executeQuery(String sql, Object... params) {
-        return executeAsync(() -> {
+        QueryResultCache.Key key = queryCache != null ? queryCache.keyFor(sql, params) : null;
+        if (key == null) {
+            return executeQuery(sql, ResultRow.MAPPER, params);
+        }
+
+        List<Map<String, Object>> cached = queryCache.get(key);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        long generation = queryCache.generation();
+        return executeQuery(sql, ResultRow.MAPPER, params)
+                .thenApply(rows -> queryCache.put(key, rows, generation));
+    }
+
+    @Override
+    public <T> CompletableFuture<List<T>> executeQuery(String sql, RowMapper<T> mapper, Object... params) {
+        boolean readOnly = isReadOnlyQuery(sql);
+        boolean primary = !readOnly || isPinnedToPrimary(sql);
+        CompletableFuture<List<T>> future = executeAsync(() -> {
+            if (!connected) {
+                throw new IllegalStateException("Not connected to database");
+            }
+
+            try {
+                // Anything that might write is neither retried nor sent to a replica
+                List<T> results = retrying(readOnly, () -> {
+                    if (!readOnly) {
+                        return write(conn -> query(conn, sql, mapper, params), false);
+                    }
+                    try (Connection conn = getReadConnection(primary)) {
+                        return query(conn, sql, mapper, params);
+                    }
+                });
+                logger.debug("Executed query:", sql, "- Results:", results.size());
+                return results;
+
+            } catch (SQLException e) {
+                logger.error(e, "Failed to execute query:", sql);
+                throw new RuntimeException(e);
+            }
+        });
+        return readOnly ? future : pinTables(future, () -> tablesOf(sql));
+    }
+
+    @Override
+    public CompletableFuture<Long> streamQuery(String sql, Consumer<Map<String, Object>> consumer, Object... params) {
+        return streamMapped(sql, ResultRow.MAPPER, consumer, params);
+    }
+
+    @Override
+    public <T> CompletableFuture<Long> streamMapped(String sql, RowMapper<T> mapper, Consumer<? super T> consumer,
+                                                    Object... params) {
+        boolean readOnly = isReadOnlyQuery(sql);
+        boolean primary = !readOnly || isPinnedToPrimary(sql);
+        CompletableFuture<Long> future = executeAsync(() -> {
+            if (!connected) {
+                throw new IllegalStateException("Not connected to database");
+            }
+
+            try {
+                long count = stream(sql, mapper, consumer, params, primary);
+                logger.debug("Streamed query:", sql, "- Rows:", count);
+                return count;
+
+            } catch (SQLException e) {
+                logger.error(e, "Failed to stream query:", sql);
+                throw new RuntimeException(e);
+            }
+        });
+        return readOnly ? future : pinTables(future, () -> tablesOf(sql));
+    }
+
+    @Override
+    public CompletableFuture<Page> page(String table, String orderColumn, Object afterValue, int limit) {
+        if (limit < 1) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Page limit must be at least 1"));
+        }
+
+        String sql;
+        try {
+            String column = dialect.quote(orderColumn);
+            sql = "SELECT * FROM " + dialect.quote(table)
+                    + (afterValue != null ? " WHERE " + column + " > ?" : "")
+                    + " ORDER BY " + column + " LIMIT ?";
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        // One extra row tells whether another page follows without a COUNT query
+        Object[] params = afterValue != null ? new Object[]{afterValue, limit + 1} : new Object[]{limit + 1};
+        return executeQuery(sql, params).thenApply(rows -> {
+            if (rows.size() <= limit) {
+                return new Page(rows, null);
+            }
+            List<Map<String, Object>> pageRows = rows.subList(0, limit);
+            return new Page(pageRows, columnValue(pageRows.get(limit - 1), orderColumn));
+        });
+    }
+
+    @Override
+    public CompletableFuture<Long> exportTo(String sql, OutputStream out, ExportFormat format, Object... params) {
+        boolean readOnly = isReadOnlyQuery(sql);
+        boolean primary = !readOnly || isPinnedToPrimary(sql);
+        CompletableFuture<Long> future = executeAsync(() -> {
+            if (!connected) {
+                throw new IllegalStateException("Not connected to database");
+            }
+            return export(sql, out, format, params, primary);
+        });
+        return readOnly ? future : pinTables(future, () -> tablesOf(sql));
+    }
+
+    @Override
+    public CompletableFuture<Long> exportTo(String sql, Path file, ExportFormat format, Object... params) {
+        boolean readOnly = isReadOnlyQuery(sql);
+        boolean primary = !readOnly || isPinnedToPrimary(sql);
+        CompletableFuture<Long> future = executeAsync(() -> {
+            if (!connected) {
+                throw new IllegalStateException("Not connected to database");
+            }
+            try (OutputStream out = Files.newOutputStream(file)) {
+                return export(sql, out, format, params, primary);
+            }
+        });
+        return readOnly ? future : pinTables(future, () -> tablesOf(sql));
+    }
+
+    private long export(String sql, OutputStream out, ExportFormat format, Object[] params, boolean primary) {
+        try {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            long count = stream(sql, new ResultExporter(writer, format, gson), row -> {
+            }, params, primary);
+            writer.flush();
+            logger.debug("Exported", count, "rows as", format.name(), "-", sql);
+            return count;
+
+        } catch (SQLException | IOException e) {
+            logger.error(e, "Failed to export query:", sql);
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static Object columnValue(Map<String, Object> row, String column) {
+        if (row.containsKey(column)) {
+            return row.get(column);
+        }
+        // Drivers may report the column in a different case than it was requested
+        for (Map.Entry<String, Object> entry : row.entrySet()) {
+            if (entry.getKey().equalsIgnoreCase(column)) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    private <T> long stream(String sql, RowMapper<T> mapper, Consumer<? super T> consumer, Object[] params,
+                            boolean primary) throws SQLException {
+        long count = 0;
+        long start = System.nanoTime();
+        // Time spent mapping and consuming rows, which is the caller's work and not the query's
+        long[] handlingTime = new long[1];
+        boolean failed = true;
+
+        try {
+            if (!isReadOnlyQuery(sql)) {
+                // Writing statements go to the primary, outside the cursor transaction whose rollback would undo them
+                count = write(conn -> streamRows(conn, sql, mapper, consumer, params, handlingTime), false);
+            } else {
+                try (Connection conn = getReadConnection(primary)) {
+                    // PostgreSQL only honours the fetch size inside a transaction
+                    boolean cursorTransaction = type == DatabaseType.POSTGRESQL && conn.getAutoCommit();
+                    if (cursorTransaction) {
+                        conn.setAutoCommit(false);
+                    }
+                    try {
+                        count = streamRows(conn, sql, mapper, consumer, params, handlingTime);
+                    } finally {
+                        if (cursorTransaction) {
+                            conn.rollback();
+                            conn.setAutoCommit(true);
+                        }
+                    }
+                }
+            }
+
+            failed = false;
+            return count;
+
+        } finally {
+            metrics.record(sql, System.nanoTime() - start - handlingTime[0], count, failed);
+        }
+    }
+
+    private <T> long streamRows(Connection conn, String sql, RowMapper<T> mapper, Consumer<? super T> consumer,
+                                Object[] params, long[] handlingTime) throws SQLException {
+        long count = 0;
+        try (PreparedStatement stmt = prepareStatement(conn, sql)) {
+
+            // MySQL streams row by row only with Integer.MIN_VALUE as fetch size
+            stmt.setFetchSize(type == DatabaseType.MYSQL ? Integer.MIN_VALUE : config.getFetchSize());
+            bindParameters(stmt, params);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                RowMapper<T> bound = mapper.bind(rs.getMetaData());
+                while (rs.next()) {
+                    long rowStart = System.nanoTime();
+                    consumer.accept(bound.map(rs));
+                    handlingTime[0] += System.nanoTime() - rowStart;
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public CompletableFuture<int[]> executeBatch(String sql, Iterable<Object[]> params) {
+        return executeBatch(sql, params, false);
+    }
+
+    CompletableFuture<int[]> executeBatch(String sql, Iterable<Object[]> params, boolean idempotent) {
+        return pinTables(executeAsync(() -> {
+            if (!connected) {
+                throw new IllegalStateException("Not connected to database");
+            }
+
+            try {
+                int[] counts = retrying(idempotent,
+                        () -> write(conn -> runInTransaction(conn, null, c -> batch(c, sql, params)), false));
+                logger.debug("Executed batch:", sql, "- Rows:", counts.length);
+                return counts;
+
+            } catch (SQLException e) {
+                logger.error(e, "Failed to execute batch:", sql);
+                throw new RuntimeException(e);
+            }
+        }), () -> tablesOf(sql));
+    }
+
+    @Override
+    public CompletableFuture<Integer> upsertAll(String table, List<String> keyColumns, List<Map<String, Object>> rows) {
+        return pinTables(executeAsync(() -> {
             if (!connected) {
                 throw new IllegalStateException("Not connected to database");
             }
+            if (rows.isEmpty()) {
+                return 0;
+            }
+
+            // One row per key, later rows overwrite earlier columns the way applying them in order would.
+            // PostgreSQL rejects a statement that touches the same row twice
+            Map<List<Object>, Map<String, Object>> unique = new LinkedHashMap<>();
+            for (Map<String, Object> row : rows) {
+                List<Object> key = new ArrayList<>(keyColumns.size());
+                for (String column : keyColumns) {
+                    key.add(row.get(column));
+                }
+                unique.computeIfAbsent(key, k -> new LinkedHashMap<>()).putAll(row);
+            }
+
+            // Rows with the same column set share statements, sorted so the SQL text stays stable
+            Map<List<String>, List<Map<String, Object>>> groups = new LinkedHashMap<>();
+            for (Map<String, Object> row : unique.values()) {
+                List<String> columns = row.keySet().stream().sorted().toList();
+                groups.computeIfAbsent(columns, k -> new ArrayList<>()).add(row);
+            }
+
+            try {
+                // Upserts converge to the same rows, so replaying them is safe
+                int affected = retrying(true, () -> write(conn -> runInTransaction(conn, null, c -> {
+                    int total = 0;
+                    for (Map.Entry<List<String>, List<Map<String, Object>>> group : groups.entrySet()) {
+                        total += upsertChunks(c, table, group.getKey(), keyColumns, group.getValue());
+                    }
+                    return total;
+                }), false));
+
+                // Chunks evicted the cache before the commit made them visible
+                if (queryCache != null) {
+                    queryCache.invalidateTables(Set.of(QueryResultCache.tableName(table)));
+                }
+                logger.debug("Upserted", rows.size(), "rows into", table, "- Rows affected:", affected);
+                return affected;
+
+            } catch (SQLException e) {
+                logger.error(e, "Failed to upsert into:", table);
+                throw new RuntimeException(e);
+            }
+        }), () -> Set.of(QueryResultCache.tableName(table)));
+    }
 
-            List<Map<String, Object>> results = new ArrayList<>();
+    private int upsertChunks(Connection conn, String table, List<String> columns, List<String> keyColumns,
+                             List<Map<String, Object>> rows) throws SQLException {
+        int rowsPerChunk = Math.max(1, Math.min(config.getBatchSize(), dialect.getMaxParameters() / columns.size()));
+        String fullChunk = null;
+        int total = 0;
 
-            try (Connection conn = getConnection();
-                 PreparedStatement stmt = conn.prepareStatement(sql)) {
+        for (int from = 0; from < rows.size(); from += rowsPerChunk) {
+            List<Map<String, Object>> chunk = rows.subList(from, Math.min(from + rowsPerChunk, rows.size()));
+            String sql;
+            if (chunk.size() == rowsPerChunk) {
+                if (fullChunk == null) {
+                    fullChunk = dialect.upsert(table, columns, keyColumns, rowsPerChunk);
+                }
+                sql = fullChunk;
+            } else {
+                sql = dialect.upsert(table, columns, keyColumns, chunk.size());
+            }
 
-                for (int i = 0; i < params.length; i++) {
-                    stmt.setObject(i + 1, params[i]);
+            Object[] params = new Object[chunk.size() * columns.size()];
+            int index = 0;
+            for (Map<String, Object> row : chunk) {
+                for (String column : columns) {
+                    params[index++] = row.get(column);
                 }
+            }
+            total += update(conn, sql, params);
+        }
+        return total;
+    }
+
+    @Override
+    public PreparedQuery prepare(String name, String sql, boolean idempotent) {
+        PreparedQueryImpl query = preparedQueries.compute(name, (key, existing) -> {
+            if (existing != null && existing.getSql().equals(sql) && existing.isIdempotent() == idempotent) {
+                return existing;
+            }
+            return new PreparedQueryImpl(this, name, sql, idempotent, statementCache.register(sql));
+        });
+        logger.debug("Registered prepared query:", name);
+        return query;
+    }
+
+    @Override
+    public PreparedQuery getPreparedQuery(String name) {
+        return preparedQueries.get(name);
+    }
+
+    public Map<String, String> getDriverProperties() {
+        return driverProperties;
+    }
+
+    public double getStatementCacheHitRate() {
+        return statementCache.getTotal().getHitRate();
+    }
+
+    @Override
+    public <T> CompletableFuture<T> inTransaction(TransactionOptions options, Function<TransactionContext, T> work) {
+        boolean readOnly = options != null && options.isReadOnly();
+        // The tables a transaction reads are unknown up front
+        boolean primary = isPinnedToPrimary(Set.of());
+        Set<String> written = ConcurrentHashMap.newKeySet();
+
+        CompletableFuture<T> future = executeAsync(() -> {
+            if (!connected) {
+                throw new IllegalStateException("Not connected to database");
+            }
 
-                try (ResultSet rs = stmt.executeQuery()) {
-                    ResultSetMetaData meta = rs.getMetaData();
-                    int columnCount = meta.getColumnCount();
+            try {
+                SQLTransactionContext[] context = new SQLTransactionContext[1];
+                SQLWork<T> transaction = conn -> {
+                    context[0] = new SQLTransactionContext(this, conn);
+                    return runInTransaction(conn, options, c -> {
+                        T value = work.apply(context[0]);
+                        if (context[0].isRollbackOnly()) {
+                            c.rollback();
+                        }
+                        return value;
+                    });
+                };
 
-                    while (rs.next()) {
-                        Map<String, Object> row = new HashMap<>();
-                        for (int i = 1; i <= columnCount; i++) {
-                            String columnName = meta.getColumnName(i);
-                            Object value = rs.getObject(i);
-                            row.put(columnName, value);
+                T result = retrying(options != null && options.isRetryable(), () -> {
+                    if (readOnly) {
+                        try (Connection conn = getReadConnection(primary)) {
+                            return transaction.execute(conn);
                         }
-                        results.add(row);
                     }
+                    return write(transaction, false);
+                });
+
+                // Statements already evicted when they ran, but a read may have cached
+                // pre-commit data in between
+                if (queryCache != null) {
+                    context[0].getWrittenStatements().forEach(queryCache::invalidate);
                 }
+                context[0].getWrittenStatements().forEach(sql -> written.addAll(tablesOf(sql)));
+                return result;
 
-                logger.debug("Executed query:", sql, "- Results:", results.size());
-                return results;
+            } catch (SQLException e) {
+                logger.error(e, "Failed to execute transaction");
+                throw new RuntimeException(e);
+            }
+        });
+        // Nothing recorded means the work wrote through the raw connection, if at all
+        return readOnly ? future : pinTables(future, () -> written);
+    }
+
+    @Override
+    public CompletableFuture<Void> save(String key, Object value) {
+        return pinKey(executeAsyncVoid(() -> {
+            if (!connected) {
+                throw new IllegalStateException("Not connected to database");
+            }
 
+            String json = gson.toJson(value);
+            invalidateKeyValue(key);
+            try {
+                retrying(true, () -> write(conn -> {
+                    ensureKeyValueTable(conn);
+                    return update(conn, dialect.upsert(config.getKeyValueTable(), KV_COLUMNS, KV_KEY_COLUMNS, 1),
+                            new Object[]{key, json});
+                }, true));
             } catch (SQLException e) {
-                logger.error(e, "Failed to execute query:", sql);
+                logger.error(e, "Failed to save key:", key);
                 throw new RuntimeException(e);
+            } finally {
+                invalidateKeyValue(key);
+            }
+        }), key);
+    }
+
+    @Override
+    public <T> CompletableFuture<T> load(String key, Class<T> type) {
+        boolean primary = isKeyPinned(key);
+        return executeAsync(() -> {
+            if (!connected) {
+                throw new IllegalStateException("Not connected to database");
+            }
+
+            Optional<String> json = readKeyValue(key, primary);
+            return json.map(value -> gson.fromJson(value, type)).orElse(null);
+        });
+    }
+
+    @Override
+    public CompletableFuture<Boolean> exists(String key) {
+        boolean primary = isKeyPinned(key);
+        return executeAsync(() -> {
+            if (!connected) {
+                throw new IllegalStateException("Not connected to database");
             }
+            return readKeyValue(key, primary).isPresent();
         });
     }
 
+    @Override
+    public CompletableFuture<Void> delete(String key) {
+        return pinKey(executeAsyncVoid(() -> {
+            if (!connected) {
+                throw new IllegalStateException("Not connected to database");
+            }
+
+            invalidateKeyValue(key);
+            try {
+                retrying(true, () -> write(conn -> {
+                    ensureKeyValueTable(conn);
+                    return update(conn, "DELETE FROM " + kvTable + " WHERE kv_key = ?", new Object[]{key});
+                }, true));
+            } catch (SQLException e) {
+                logger.error(e, "Failed to delete key:", key);
+                throw new RuntimeException(e);
+            } finally {
+                invalidateKeyValue(key);
+            }
+        }), key);
+    }
+
+    @Override
+    public CompletableFuture<List<String>> getKeys() {
+        return queryKeys("SELECT kv_key FROM " + kvTable, new Object[0]);
+    }
+
+    @Override
+    public CompletableFuture<List<String>> getKeys(String prefix) {
+        String sql = "SELECT kv_key FROM " + kvTable + " WHERE " + dialect.keyPrefixCondition() + " ORDER BY kv_key";
+        return queryKeys(sql, new Object[]{dialect.keyPrefixPattern(prefix)});
+    }
+
+    @Override
+    public CompletableFuture<List<String>> scan(String from, String to, int limit) {
+        if (limit < 1) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Scan limit must be at least 1"));
+        }
+
+        List<Object> params = new ArrayList<>(3);
+        StringBuilder sql = new StringBuilder("SELECT kv_key FROM ").append(kvTable);
+        if (from != null) {
+            sql.append(" WHERE kv_key >= ?");
+            params.add(from);
+        }
+        if (to != null) {
+            sql.append(from != null ? " AND" : " WHERE").append(" kv_key < ?");
+            params.add(to);
+        }
+        sql.append(" ORDER BY kv_key LIMIT ?");
+        params.add(limit);
+        return queryKeys(sql.toString(), params.toArray());
+    }
+
+    private CompletableFuture<List<String>> queryKeys(String sql, Object[] params) {
+        boolean primary = isPinnedToPrimary(Set.of(kvTableName));
+        return executeAsync(() -> {
+            if (!connected) {
+                throw new IllegalStateException("Not connected to database");
+            }
+
+            try {
+                return retrying(true, () -> {
+                    ensureKeyValueTable();
+                    try (Connection conn = getReadConnection(primary)) {
+                        return query(conn, sql, rs -> rs.getString(1), params);
+                    }
+                });
+            } catch (SQLException e) {
+                logger.error(e, "Failed to list keys");
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    // Errs towards writing: a read that merely mentions a keyword, e.g. REPLACE(), only loses its retry
+    // and runs on the primary
+    static boolean isReadOnlyQuery(String sql) {
+        return READ_ONLY_QUERY.matcher(sql).find()
+                && !WRITING_KEYWORD.matcher(sql.replaceAll("'(?:[^']|'')*'", "''")).find();
+    }
+
+    // Runs before and after each write so reads overlapping it on either side never cache
+    private void invalidateKeyValue(String key) {
+        if (kvCache != null) {
+            kvGeneration.incrementAndGet();
+            kvCache.invalidate(key);
+        }
+    }
+
+    private Optional<String> readKeyValue(String key, boolean primary) {
+        if (kvCache != null) {
+            Optional<String> cached = kvCache.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        long generation = kvGeneration.get();
+        try {
+            List<String> values = retrying(true, () -> {
+                ensureKeyValueTable();
+                try (Connection conn = getReadConnection(primary)) {
+                    return query(conn, "SELECT kv_value FROM " + kvTable + " WHERE kv_key = ?",
+                            rs -> rs.getString(1), new Object[]{key});
+                }
+            });
+
+            Optional<String> json = values.isEmpty() ? Optional.empty() : Optional.of(values.get(0));
+            if (kvCache != null) {
+                kvCache.put(key, json);
+                // A write that ran meanwhile may already have invalidated, drop the possibly stale value
+                if (kvGeneration.get() != generation) {
+                    kvCache.invalidate(key);
+                }
+            }
+            return json;
+        } catch (SQLException e) {
+            logger.error(e, "Failed to load key:", key);
+            throw new RuntimeException(e);
+        }
+    }
+
+    // Read paths create the table through the primary, replicas reject DDL even with IF NOT EXISTS
+    private void ensureKeyValueTable() throws SQLException {
+        if (!kvTableReady) {
+            write(conn -> {
+                ensureKeyValueTable(conn);
+                return null;
+            }, false);
+        }
+    }
+
+    private void ensureKeyValueTable(Connection conn) throws SQLException {
+        if (kvTableReady) {
+            return;
+        }
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(dialect.createKeyValueTable(config.getKeyValueTable()));
+            for (String index : dialect.createKeyValueIndexes(config.getKeyValueTable())) {
+                stmt.execute(index);
+            }
+        }
+        kvTableReady = true;
+    }
+
+    private <T> T runInTransaction(Connection conn, TransactionOptions options, SQLWork<T> work) throws SQLException {
+        IsolationLevel isolation = options != null && options.getIsolation() != null
+                ? options.getIsolation()
+                : config.getDefaultIsolation();
+        boolean readOnly = options != null && options.isReadOnly();
+
+        boolean previousAutoCommit = conn.getAutoCommit();
+        int previousIsolation = conn.getTransactionIsolation();
+
+        if (isolation != null && isolation.getJdbcLevel() != previousIsolation) {
+            conn.setTransactionIsolation(isolation.getJdbcLevel());
+        }
+        if (readOnly) {
+            conn.setReadOnly(true);
+        }
+        conn.setAutoCommit(false);
+
+        try {
+            T result = work.execute(conn);
+            conn.commit();
+            return result;
+        } catch (SQLException | RuntimeException | Error e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(previousAutoCommit);
+            if (readOnly) {
+                conn.setReadOnly(false);
+            }
+            if (conn.getTransactionIsolation() != previousIsolation) {
+                conn.setTransactionIsolation(previousIsolation);
+            }
+        }
+    }
+
+    int update(Connection conn, String sql, Object[] params) throws SQLException {
+        long start = System.nanoTime();
+        int rows = 0;
+        boolean failed = true;
+
+        try (PreparedStatement stmt = prepareStatement(conn, sql)) {
+            bindParameters(stmt, params);
+            rows = stmt.executeUpdate();
+            failed = false;
+            return rows;
+        } finally {
+            metrics.record(sql, System.nanoTime() - start, rows, failed);
+            if (queryCache != null) {
+                queryCache.invalidate(sql);
+            }
+        }
+    }
+
+    <T> List<T> query(Connection conn, String sql, RowMapper<T> mapper, Object[] params) throws SQLException {
+        List<T> results = new ArrayList<>();
+        long start = System.nanoTime();
+        boolean failed = true;
+
+        try (PreparedStatement stmt = prepareStatement(conn, sql)) {
+            bindParameters(stmt, params);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                RowMapper<T> bound = mapper.bind(rs.getMetaData());
+                while (rs.next()) {
+                    results.add(bound.map(rs));
+                }
+            }
+            failed = false;
+        } finally {
+            metrics.record(sql, System.nanoTime() - start, results.size(), failed);
+        }
+        return results;
+    }
+
+    int[] batch(Connection conn, String sql, Iterable<Object[]> params) throws SQLException {
+        int batchSize = config.getBatchSize();
+        int[] counts = new int[batchSize];
+        int total = 0;
+        long start = System.nanoTime();
+        boolean failed = true;
+
+        try (PreparedStatement stmt = prepareStatement(conn, sql)) {
+            int pending = 0;
+            for (Object[] row : params) {
+                bindParameters(stmt, row);
+                stmt.addBatch();
+
+                if (++pending == batchSize) {
+                    int[] chunk = stmt.executeBatch();
+                    counts = appendCounts(counts, total, chunk);
+                    total += chunk.length;
+                    pending = 0;
+                }
+            }
+
+            if (pending > 0) {
+                int[] chunk = stmt.executeBatch();
+                counts = appendCounts(counts, total, chunk);
+                total += chunk.length;
+            }
+            failed = false;
+        } finally {
+            metrics.record(sql, System.nanoTime() - start, total, failed);
+            if (queryCache != null) {
+                queryCache.invalidate(sql);
+            }
+        }
+        return Arrays.copyOf(counts, total);
+    }
+
+    private Map<String, String> resolveDriverProperties() {
+        Map<String, String> properties = new LinkedHashMap<>();
+        if (config.getStatementCacheSize() > 0) {
+            properties.putAll(dialect.statementCacheProperties(config.getStatementCacheSize()));
+        }
+        if (config.getPerformanceProfile() == PerformanceProfile.OPTIMIZED) {
+            properties.putAll(dialect.performanceProperties());
+        }
+        properties.putAll(config.getDataSourceProperties());
+        if (isSplitMode()) {
+            // Readers only run alongside the writer in WAL mode
+            properties.put("journal_mode", "WAL");
+        }
+        return Collections.unmodifiableMap(properties);
+    }
+
+    // Only MySQL's server-side prepares keep a per-connection cache whose hits follow from the SQL alone
+    private int trackedStatementCacheSize(Map<String, String> properties) {
+        if (type != DatabaseType.MYSQL
+                || !Boolean.parseBoolean(properties.get("cachePrepStmts"))
+                || !Boolean.parseBoolean(properties.get("useServerPrepStmts"))) {
+            return 0;
+        }
+        try {
+            // 25 is Connector/J's default
+            return Integer.parseInt(properties.getOrDefault("prepStmtCacheSize", "25"));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static String describe(Map<String, String> properties) {
+        if (properties.isEmpty()) {
+            return "none";
+        }
+        StringBuilder builder = new StringBuilder();
+        properties.forEach((key, value) -> {
+            boolean secret = key.toLowerCase().contains("password");
+            builder.append(builder.isEmpty() ? "" : ", ").append(key).append('=').append(secret ? "***" : value);
+        });
+        return builder.toString();
+    }
+
+    private PreparedStatement prepareStatement(Connection conn, String sql) throws SQLException {
+        statementCache.record(conn, sql);
+        return conn.prepareStatement(sql);
+    }
+
+    private static void bindParameters(PreparedStatement stmt, Object[] params) throws SQLException {
+        for (int i = 0; i < params.length; i++) {
+            stmt.setObject(i + 1, params[i]);
+        }
+    }
+
+    private static int[] appendCounts(int[] counts, int offset, int[] chunk) {
+        if (offset + chunk.length > counts.length) {
+            counts = Arrays.copyOf(counts, Math.max(counts.length * 2, offset + chunk.length));
+        }
+        System.arraycopy(chunk, 0, counts, offset, chunk.length);
+        return counts;
+    }
+
+    @FunctionalInterface
+    interface SQLWork<T> {
+        T execute(Connection conn) throws SQLException;
+    }
+
+    @FunctionalInterface
+    private interface SQLCall<T> {
+        T call() throws SQLException;
+    }
+
     public HikariDataSource getDataSource() {
         return dataSource;
     }
@@ -0,0 +1,260 @@
+package org.extstudios.extcore.internal.database;
+
+import org.extstudios.extcore.api.database.DatabaseType;
+
+import java.sql.SQLException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+public enum SQLDialect {
+
+    MYSQL('`', "MEDIUMTEXT", 65535) {
+        // The default _ci collation would make keys case- and accent-insensitive, unlike the file stores
+        @Override
+        public String createKeyValueTable(String table) {
+            return "CREATE TABLE IF NOT EXISTS " + quote(table) + " ("
+                    + "kv_key VARCHAR(255) CHARACTER SET utf8mb4 COLLATE utf8mb4_bin NOT NULL PRIMARY KEY, "
+                    + "kv_value MEDIUMTEXT NOT NULL)";
+        }
+
+        @Override
+        public Map<String, String> statementCacheProperties(int cacheSize) {
+            Map<String, String> properties = new LinkedHashMap<>();
+            properties.put("cachePrepStmts", "true");
+            properties.put("prepStmtCacheSize", String.valueOf(cacheSize));
+            properties.put("prepStmtCacheSqlLimit", "2048");
+            properties.put("useServerPrepStmts", "true");
+            return properties;
+        }
+
+        @Override
+        public Map<String, String> performanceProperties() {
+            Map<String, String> properties = new LinkedHashMap<>();
+            properties.put("rewriteBatchedStatements", "true");
+            properties.put("useLocalSessionState", "true");
+            properties.put("cacheServerConfiguration", "true");
+            properties.put("elideSetAutoCommits", "true");
+            return properties;
+        }
+
+        @Override
+        public boolean isTransient(SQLException e) {
+            // 1213 = deadlock, 1205 = lock wait timeout
+            return super.isTransient(e) || e.getErrorCode() == 1213 || e.getErrorCode() == 1205;
+        }
+
+        @Override
+        protected void appendConflictClause(StringBuilder sql, List<String> columns, List<String> keyColumns) {
+            // VALUES(col) rather than the 8.0.19+ row alias, so MariaDB and MySQL 5.7 accept it too
+            sql.append(" ON DUPLICATE KEY UPDATE ");
+            List<String> updates = nonKeyColumns(columns, keyColumns);
+            if (updates.isEmpty()) {
+                // Nothing to update, but the statement still has to be a valid no-op
+                String key = quote(keyColumns.get(0));
+                sql.append(key).append(" = ").append(key);
+                return;
+            }
+            for (int i = 0; i < updates.size(); i++) {
+                String column = quote(updates.get(i));
+                sql.append(i == 0 ? "" : ", ").append(column).append(" = VALUES(").append(column).append(')');
+            }
+        }
+    },
+
+    POSTGRESQL('"', "TEXT", 32767) {
+        @Override
+        public Map<String, String> statementCacheProperties(int cacheSize) {
+            Map<String, String> properties = new LinkedHashMap<>();
+            properties.put("prepareThreshold", "3");
+            properties.put("preparedStatementCacheQueries", String.valueOf(cacheSize));
+            return properties;
+        }
+
+        @Override
+        public Map<String, String> performanceProperties() {
+            return Map.of("reWriteBatchedInserts", "true");
+        }
+
+        @Override
+        public boolean isTransient(SQLException e) {
+            // 40P01 = deadlock, 57P0x = server shutting down or restarting
+            String state = e.getSQLState();
+            return super.isTransient(e) || "40P01".equals(state) || (state != null && state.startsWith("57P0"));
+        }
+
+        @Override
+        public List<String> createKeyValueIndexes(String table) {
+            // The primary key index only serves LIKE prefixes under the C collation
+            return List.of("CREATE INDEX IF NOT EXISTS " + quote(table + "_kv_key_prefix")
+                    + " ON " + quote(table) + " (kv_key text_pattern_ops)");
+        }
+    },
+
+    // SQLite before 3.32 caps bound parameters at 999
+    SQLITE('"', "TEXT", 999) {
+        @Override
+        public Map<String, String> performanceProperties() {
+            // sqlite-jdbc applies these as pragmas on every new connection
+            Map<String, String> properties = new LinkedHashMap<>();
+            properties.put("journal_mode", "WAL");
+            properties.put("synchronous", "NORMAL");
+            properties.put("mmap_size", String.valueOf(256L * 1024 * 1024));
+            properties.put("cache_size", "-16000");
+            properties.put("temp_store", "MEMORY");
+            properties.put("busy_timeout", "5000");
+            return properties;
+        }
+
+        @Override
+        public boolean isTransient(SQLException e) {
+            // SQLITE_BUSY and SQLITE_LOCKED, including their extended codes
+            int primaryCode = e.getErrorCode() & 0xFF;
+            return super.isTransient(e) || primaryCode == 5 || primaryCode == 6;
+        }
+
+        // LIKE is case-insensitive here and skips the index, GLOB matches exactly and uses it
+        @Override
+        public String keyPrefixCondition() {
+            return "kv_key GLOB ?";
+        }
+
+        @Override
+        public String keyPrefixPattern(String prefix) {
+            StringBuilder pattern = new StringBuilder(prefix.length() + 1);
+            for (char c : prefix.toCharArray()) {
+                if (c == '*' || c == '?' || c == '[') {
+                    pattern.append('[').append(c).append(']');
+                } else {
+                    pattern.append(c);
+                }
+            }
+            return pattern.append('*').toString();
+        }
+    };
+
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+
+    private final char quote;
+    private final String textType;
+    private final int maxParameters;
+
+    SQLDialect(char quote, String textType, int maxParameters) {
+        this.quote = quote;
+        this.textType = textType;
+        this.maxParameters = maxParameters;
+    }
+
+    public static SQLDialect of(DatabaseType type) {
+        switch (type) {
+            case MYSQL:
+                return MYSQL;
+            case POSTGRESQL:
+                return POSTGRESQL;
+            case SQLITE:
+                return SQLITE;
+            default:
+                throw new IllegalArgumentException("Not an SQL type: " + type);
+        }
+    }
+
+    public int getMaxParameters() {
+        return maxParameters;
+    }
+
+    public String quote(String identifier) {
+        if (!IDENTIFIER.matcher(identifier).matches()) {
+            throw new IllegalArgumentException("Invalid SQL identifier: " + identifier);
+        }
+        return quote + identifier + quote;
+    }
+
+    // Driver-level prepared statement cache, empty when the driver has none
+    public Map<String, String> statementCacheProperties(int cacheSize) {
+        return Map.of();
+    }
+
+    public Map<String, String> performanceProperties() {
+        return Map.of();
+    }
+
+    // Failures that may succeed when the same operation is simply tried again
+    public boolean isTransient(SQLException e) {
+        if (e instanceof SQLTransientException || e instanceof SQLRecoverableException) {
+            return true;
+        }
+        String state = e.getSQLState();
+        return state != null && (state.startsWith("08") || state.equals("40001"));
+    }
+
+    public String createKeyValueTable(String table) {
+        return "CREATE TABLE IF NOT EXISTS " + quote(table) + " ("
+                + "kv_key VARCHAR(255) NOT NULL PRIMARY KEY, "
+                + "kv_value " + textType + " NOT NULL)";
+    }
+
+    public List<String> createKeyValueIndexes(String table) {
+        return List.of();
+    }
+
+    public String keyPrefixCondition() {
+        return "kv_key LIKE ? ESCAPE '!'";
+    }
+
+    public String keyPrefixPattern(String prefix) {
+        StringBuilder pattern = new StringBuilder(prefix.length() + 1);
+        for (char c : prefix.toCharArray()) {
+            if (c == '!' || c == '%' || c == '_') {
+                pattern.append('!');
+            }
+            pattern.append(c);
+        }
+        return pattern.append('%').toString();
+    }
+
+    public String upsert(String table, List<String> columns, List<String> keyColumns, int rows) {
+        if (keyColumns.isEmpty() || !columns.containsAll(keyColumns)) {
+            throw new IllegalArgumentException("Key columns must be a non-empty subset of the columns");
+        }
+
+        StringBuilder sql = new StringBuilder("INSERT INTO ").append(quote(table)).append(" (");
+        for (int i = 0; i < columns.size(); i++) {
+            sql.append(i == 0 ? "" : ", ").append(quote(columns.get(i)));
+        }
+        sql.append(") VALUES ");
+
+        String placeholders = "(" + "?, ".repeat(columns.size() - 1) + "?)";
+        for (int i = 0; i < rows; i++) {
+            sql.append(i == 0 ? "" : ", ").append(placeholders);
+        }
+
+        appendConflictClause(sql, columns, keyColumns);
+        return sql.toString();
+    }
+
+    protected void appendConflictClause(StringBuilder sql, List<String> columns, List<String> keyColumns) {
+        sql.append(" ON CONFLICT (");
+        for (int i = 0; i < keyColumns.size(); i++) {
+            sql.append(i == 0 ? "" : ", ").append(quote(keyColumns.get(i)));
+        }
+        sql.append(')');
+
+        List<String> updates = nonKeyColumns(columns, keyColumns);
+        if (updates.isEmpty()) {
+            sql.append(" DO NOTHING");
+            return;
+        }
+        sql.append(" DO UPDATE SET ");
+        for (int i = 0; i < updates.size(); i++) {
+            String column = quote(updates.get(i));
+            sql.append(i == 0 ? "" : ", ").append(column).append(" = excluded.").append(column);
+        }
+    }
+
+    private static List<String> nonKeyColumns(List<String> columns, List<String> keyColumns) {
+        return columns.stream().filter(column -> !keyColumns.contains(column)).toList();
+    }
+}
@@ -0,0 +1,113 @@
+package org.extstudios.extcore.internal.database;
+
+import org.extstudios.extcore.api.database.RowMapper;
+import org.extstudios.extcore.api.database.TransactionContext;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public class SQLTransactionContext implements TransactionContext {
+
+    private final SQLDatabase database;
+    private final Connection connection;
+    private final List<String> writtenStatements = new ArrayList<>();
+    private boolean rollbackOnly;
+
+    SQLTransactionContext(SQLDatabase database, Connection connection) {
+        this.database = database;
+        this.connection = connection;
+    }
+
+    @Override
+    public int executeUpdate(String sql, Object... params) {
+        writtenStatements.add(sql);
+        try {
+            return database.update(connection, sql, params);
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public List<Map<String, Object>> executeQuery(String sql, Object... params) {
+        return executeQuery(sql, ResultRow.MAPPER, params);
+    }
+
+    @Override
+    public <T> List<T> executeQuery(String sql, RowMapper<T> mapper, Object... params) {
+        try {
+            return database.query(connection, sql, mapper, params);
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public int[] executeBatch(String sql, Iterable<Object[]> params) {
+        writtenStatements.add(sql);
+        try {
+            return database.batch(connection, sql, params);
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public Savepoint setSavepoint() {
+        try {
+            return connection.setSavepoint();
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public Savepoint setSavepoint(String name) {
+        try {
+            return connection.setSavepoint(name);
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void rollbackTo(Savepoint savepoint) {
+        try {
+            connection.rollback(savepoint);
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void releaseSavepoint(Savepoint savepoint) {
+        try {
+            connection.releaseSavepoint(savepoint);
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void setRollbackOnly() {
+        rollbackOnly = true;
+    }
+
+    @Override
+    public boolean isRollbackOnly() {
+        return rollbackOnly;
+    }
+
+    @Override
+    public Connection getConnection() {
+        return connection;
+    }
+
+    List<String> getWrittenStatements() {
+        return writtenStatements;
+    }
+}
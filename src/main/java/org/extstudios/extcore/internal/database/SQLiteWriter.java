@@ -0,0 +1,220 @@
+package org.extstudios.extcore.internal.database;
+
+import org.extstudios.extcore.api.LoggingService;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Serializes all writes of a split SQLite database onto its single writer connection.
+ * Callers block until their write has been applied. With group commit enabled, simple
+ * writes that queue up while another write is running are applied together in one
+ * transaction, each inside its own savepoint so a failing write does not take the
+ * rest of the group down with it.
+ */
+public class SQLiteWriter {
+
+    private final DataSource dataSource;
+    private final LoggingService logger;
+    private final boolean groupCommit;
+    private final int maxGroupSize;
+    private final ThreadFactory threadFactory;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ArrayDeque<WriteTask<?>> queue = new ArrayDeque<>();
+    private boolean draining;
+
+    public SQLiteWriter(String name, DataSource dataSource, LoggingService logger, boolean groupCommit, int maxGroupSize) {
+        this.dataSource = dataSource;
+        this.logger = logger;
+        this.groupCommit = groupCommit;
+        this.maxGroupSize = maxGroupSize;
+        this.threadFactory = Thread.ofVirtual().name(name + "-Writer").factory();
+    }
+
+    public <T> T execute(SQLDatabase.SQLWork<T> work, boolean groupable) throws SQLException {
+        WriteTask<T> task = new WriteTask<>(work, groupable);
+
+        boolean start;
+        lock.lock();
+        try {
+            queue.add(task);
+            start = !draining;
+            draining = true;
+        } finally {
+            lock.unlock();
+        }
+
+        if (start) {
+            threadFactory.newThread(this::drain).start();
+        }
+
+        try {
+            return task.future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for the SQLite writer", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException sqlException) {
+                throw sqlException;
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new SQLException(cause);
+        }
+    }
+
+    public int getQueueDepth() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void drain() {
+        List<WriteTask<?>> group = nextGroup();
+        try {
+            while (!group.isEmpty()) {
+                try (Connection conn = dataSource.getConnection()) {
+                    if (group.size() == 1) {
+                        group.get(0).runAlone(conn);
+                    } else {
+                        runGroup(conn, group);
+                    }
+                } catch (SQLException | RuntimeException e) {
+                    // Only reached when no connection could be obtained
+                    group.forEach(task -> task.future.completeExceptionally(e));
+                }
+                group = nextGroup();
+            }
+        } catch (Throwable t) {
+            // An Error ended this drain, fail its group and hand the queue to a fresh one
+            for (WriteTask<?> task : group) {
+                task.future.completeExceptionally(t);
+            }
+            restartDrain();
+            throw t;
+        }
+    }
+
+    private void restartDrain() {
+        boolean restart;
+        lock.lock();
+        try {
+            restart = !queue.isEmpty();
+            draining = restart;
+        } finally {
+            lock.unlock();
+        }
+        if (restart) {
+            threadFactory.newThread(this::drain).start();
+        }
+    }
+
+    private List<WriteTask<?>> nextGroup() {
+        lock.lock();
+        try {
+            WriteTask<?> first = queue.poll();
+            if (first == null) {
+                draining = false;
+                return List.of();
+            }
+
+            List<WriteTask<?>> group = new ArrayList<>();
+            group.add(first);
+            if (groupCommit && first.groupable) {
+                while (group.size() < maxGroupSize && queue.peek() != null && queue.peek().groupable) {
+                    group.add(queue.poll());
+                }
+            }
+            return group;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void runGroup(Connection conn, List<WriteTask<?>> group) throws SQLException {
+        List<WriteTask<?>> applied = new ArrayList<>(group.size());
+        Throwable failure = null;
+        try {
+            conn.setAutoCommit(false);
+            for (WriteTask<?> task : group) {
+                Savepoint savepoint = conn.setSavepoint();
+                try {
+                    task.apply(conn);
+                    conn.releaseSavepoint(savepoint);
+                    applied.add(task);
+                } catch (SQLException | RuntimeException e) {
+                    conn.rollback(savepoint);
+                    task.future.completeExceptionally(e);
+                }
+            }
+
+            conn.commit();
+            applied.forEach(WriteTask::complete);
+            logger.debug("Group committed", applied.size(), "of", group.size(), "writes");
+
+        } catch (Throwable t) {
+            failure = t;
+            try {
+                conn.rollback();
+            } catch (SQLException e) {
+                t.addSuppressed(e);
+            }
+            throw t;
+        } finally {
+            // Every caller blocks on its future, so none may be left unfinished however the group ended
+            for (WriteTask<?> task : group) {
+                if (!task.future.isDone()) {
+                    task.future.completeExceptionally(failure != null ? failure : new SQLException("Group commit aborted"));
+                }
+            }
+            conn.setAutoCommit(true);
+        }
+    }
+
+    private static final class WriteTask<T> {
+
+        private final SQLDatabase.SQLWork<T> work;
+        private final boolean groupable;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private T result;
+
+        private WriteTask(SQLDatabase.SQLWork<T> work, boolean groupable) {
+            this.work = work;
+            this.groupable = groupable;
+        }
+
+        private void apply(Connection conn) throws SQLException {
+            result = work.execute(conn);
+        }
+
+        private void complete() {
+            future.complete(result);
+        }
+
+        private void runAlone(Connection conn) {
+            try {
+                future.complete(work.execute(conn));
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        }
+    }
+}
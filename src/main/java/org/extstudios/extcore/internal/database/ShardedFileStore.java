@@ -0,0 +1,195 @@
+package org.extstudios.extcore.internal.database;
+
+import org.extstudios.extcore.api.LoggingService;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Spreads a file database over a fixed number of bucket files in its own directory.
+ * Buckets are read on first access and only the ones marked dirty are rewritten, in
+ * parallel. Like the databases using it, it must only be touched from the executor.
+ */
+public class ShardedFileStore<B> {
+
+    private static final String PREFIX = "bucket-";
+    private static final Pattern INDEX = Pattern.compile("\\d{1,9}");
+
+    private final Path directory;
+    private final String extension;
+    private final LoggingService logger;
+    private final BucketReader<B> reader;
+    private final BucketWriter<B> writer;
+    private final Object[] buckets;
+    private final BitSet dirty;
+
+    public ShardedFileStore(Path directory, String extension, int count, LoggingService logger,
+                            BucketReader<B> reader, BucketWriter<B> writer) {
+        this.directory = directory;
+        this.extension = extension;
+        this.logger = logger;
+        this.reader = reader;
+        this.writer = writer;
+        this.buckets = new Object[count];
+        this.dirty = new BitSet(count);
+    }
+
+    /**
+     * Creates the directory and refuses to open one written with more buckets, since
+     * keys would silently hash to different files. Files whose name does not carry a
+     * bucket number, such as backups, are skipped with a warning.
+     */
+    public void open() throws IOException {
+        Files.createDirectories(directory);
+        try (Stream<Path> files = Files.list(directory)) {
+            int highest = files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(PREFIX) && name.endsWith(extension))
+                    .filter(this::isBucketName)
+                    .mapToInt(name -> Integer.parseInt(bucketNumber(name)))
+                    .max()
+                    .orElse(-1);
+            if (highest >= buckets.length) {
+                throw new IllegalStateException(directory.getFileName() + " was written with at least "
+                        + (highest + 1) + " shards but is configured with " + buckets.length);
+            }
+        }
+    }
+
+    private boolean isBucketName(String name) {
+        if (name.length() >= PREFIX.length() + extension.length() && INDEX.matcher(bucketNumber(name)).matches()) {
+            return true;
+        }
+        logger.warn("Ignoring", name, "in", directory.getFileName(), "- not a bucket file");
+        return false;
+    }
+
+    private String bucketNumber(String name) {
+        return name.substring(PREFIX.length(), name.length() - extension.length());
+    }
+
+    public int count() {
+        return buckets.length;
+    }
+
+    public int indexOf(String shardKey) {
+        // String.hashCode is specified, so the mapping is stable across restarts
+        return Math.floorMod(shardKey.hashCode(), buckets.length);
+    }
+
+    public B bucket(String shardKey) throws IOException {
+        return bucket(indexOf(shardKey));
+    }
+
+    @SuppressWarnings("unchecked")
+    public B bucket(int index) throws IOException {
+        B bucket = (B) buckets[index];
+        if (bucket == null) {
+            bucket = reader.read(path(index));
+            buckets[index] = bucket;
+        }
+        return bucket;
+    }
+
+    public List<B> all() throws IOException {
+        List<B> all = new ArrayList<>(buckets.length);
+        for (int i = 0; i < buckets.length; i++) {
+            all.add(bucket(i));
+        }
+        return all;
+    }
+
+    public void markDirty(String shardKey) {
+        markDirty(indexOf(shardKey));
+    }
+
+    public void markDirty(int index) {
+        dirty.set(index);
+    }
+
+    public boolean isDirty() {
+        return !dirty.isEmpty();
+    }
+
+    /**
+     * Rewrites every dirty bucket, each on its own virtual thread. Buckets that fail
+     * stay dirty so the next flush retries them.
+     */
+    @SuppressWarnings("unchecked")
+    public void flush(boolean fsync) throws IOException {
+        if (dirty.isEmpty()) {
+            return;
+        }
+
+        int[] indexes = dirty.stream().toArray();
+        if (indexes.length == 1) {
+            writer.write(path(indexes[0]), (B) buckets[indexes[0]], fsync);
+            dirty.clear(indexes[0]);
+            return;
+        }
+
+        List<Future<?>> writes = new ArrayList<>(indexes.length);
+        IOException failure = null;
+        try (ExecutorService writers = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int index : indexes) {
+                B bucket = (B) buckets[index];
+                writes.add(writers.submit(() -> {
+                    writer.write(path(index), bucket, fsync);
+                    return null;
+                }));
+            }
+
+            for (int i = 0; i < indexes.length; i++) {
+                try {
+                    writes.get(i).get();
+                    dirty.clear(indexes[i]);
+                } catch (ExecutionException e) {
+                    IOException cause = e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+                    if (failure == null) {
+                        failure = cause;
+                    } else {
+                        failure.addSuppressed(cause);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while flushing " + directory.getFileName());
+                }
+            }
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(buckets, null);
+        dirty.clear();
+    }
+
+    private Path path(int index) {
+        return directory.resolve(String.format("%s%04d%s", PREFIX, index, extension));
+    }
+
+    // Also called for buckets that were never written, which must read as empty
+    @FunctionalInterface
+    public interface BucketReader<B> {
+        B read(Path path) throws IOException;
+    }
+
+    @FunctionalInterface
+    public interface BucketWriter<B> {
+        void write(Path path, B bucket, boolean fsync) throws IOException;
+    }
+}
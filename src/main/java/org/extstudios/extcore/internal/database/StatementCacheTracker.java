@@ -0,0 +1,123 @@
+package org.extstudios.extcore.internal.database;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Estimates how often statements are served from MySQL's per-connection cache of
+ * server-side prepared statements. For every physical connection it mirrors the
+ * driver's LRU of prepared SQL strings, so a prepare counts as a hit when the driver
+ * would have reused an already prepared statement. Other drivers either have no such
+ * cache or decide per statement when to prepare, so nothing is tracked for them and
+ * the hit rates read as NaN.
+ */
+public class StatementCacheTracker {
+
+    private static final int MIN_PRUNE_SIZE = 64;
+
+    // A pooled connection is only used by one thread at a time, so its set needs no lock
+    private final Map<Connection, Set<String>> prepared = new ConcurrentHashMap<>();
+    private final Map<String, Counter> registered = new ConcurrentHashMap<>();
+    private final Counter total = new Counter();
+    private volatile int cacheSize;
+    private volatile int pruneAt = MIN_PRUNE_SIZE;
+
+    // 0 disables tracking
+    public void setCacheSize(int cacheSize) {
+        this.cacheSize = cacheSize;
+    }
+
+    public void record(Connection conn, String sql) {
+        if (cacheSize <= 0) {
+            return;
+        }
+
+        Connection physical = conn;
+        try {
+            physical = conn.unwrap(Connection.class);
+        } catch (SQLException ignored) {
+            // Not a wrapper, track the connection itself
+        }
+
+        Set<String> statements = prepared.get(physical);
+        if (statements == null) {
+            pruneClosed();
+            statements = prepared.computeIfAbsent(physical, k -> newLruSet());
+        }
+        boolean hit = !statements.add(sql);
+
+        total.record(hit);
+        Counter counter = registered.get(sql);
+        if (counter != null) {
+            counter.record(hit);
+        }
+    }
+
+    public Counter register(String sql) {
+        return registered.computeIfAbsent(sql, k -> new Counter());
+    }
+
+    public void clear() {
+        prepared.clear();
+    }
+
+    public Counter getTotal() {
+        return total;
+    }
+
+    // The pool replaces connections over time, forget the ones it has closed
+    private void pruneClosed() {
+        if (prepared.size() < pruneAt) {
+            return;
+        }
+        prepared.keySet().removeIf(conn -> {
+            try {
+                return conn.isClosed();
+            } catch (SQLException e) {
+                return true;
+            }
+        });
+        pruneAt = Math.max(MIN_PRUNE_SIZE, prepared.size() * 2);
+    }
+
+    private Set<String> newLruSet() {
+        int size = cacheSize;
+        return Collections.newSetFromMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > size;
+            }
+        });
+    }
+
+    public static class Counter {
+
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+
+        void record(boolean hit) {
+            (hit ? hits : misses).increment();
+        }
+
+        public long getHits() {
+            return hits.sum();
+        }
+
+        public long getMisses() {
+            return misses.sum();
+        }
+
+        // NaN when nothing was tracked, see the class comment
+        public double getHitRate() {
+            long hitCount = hits.sum();
+            long count = hitCount + misses.sum();
+            return count == 0 ? Double.NaN : (double) hitCount / count;
+        }
+    }
+}
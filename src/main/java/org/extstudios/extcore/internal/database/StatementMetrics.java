@@ -0,0 +1,70 @@
+package org.extstudios.extcore.internal.database;
+
+import org.extstudios.extcore.api.database.StatementStats;
+
+import java.util.concurrent.atomic.LongAdder;
+
+public class StatementMetrics implements StatementStats {
+
+    private final String sql;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+
+    StatementMetrics(String sql) {
+        this.sql = sql;
+    }
+
+    void record(long nanos, long rowCount, boolean failed) {
+        latency.record(nanos);
+        rows.add(rowCount);
+        if (failed) {
+            errors.increment();
+        }
+    }
+
+    @Override
+    public String getSql() {
+        return sql;
+    }
+
+    @Override
+    public long getExecutionCount() {
+        return latency.getCount();
+    }
+
+    @Override
+    public long getErrorCount() {
+        return errors.sum();
+    }
+
+    @Override
+    public long getRowCount() {
+        return rows.sum();
+    }
+
+    @Override
+    public double getAverageMillis() {
+        return latency.getAverageMillis();
+    }
+
+    @Override
+    public double getMaxMillis() {
+        return latency.getMaxMillis();
+    }
+
+    @Override
+    public double getPercentileMillis(double percentile) {
+        return latency.getPercentileMillis(percentile);
+    }
+
+    @Override
+    public double[] getBucketBoundsMillis() {
+        return LatencyHistogram.BOUNDS_MILLIS.clone();
+    }
+
+    @Override
+    public long[] getHistogram() {
+        return latency.snapshot();
+    }
+}
@@ -1,25 +1,37 @@
 package org.extstudios.extcore.internal.database;
 
+import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.plugin.Plugin;
 import org.extstudios.extcore.api.database.DatabaseType;
+import org.extstudios.extcore.api.database.FileDatabaseConfig;
 import org.extstudios.extcore.api.LoggingService;
 import org.extstudios.extcore.api.task.TaskService;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 
-public class YAMLDatabase extends AbstractDatabase {
+public class YAMLDatabase extends AbstractFileDatabase {
 
-    private final File file;
     private YamlConfiguration yaml;
+    // Replaces yaml when sharding is enabled, keys are routed by their top-level section
+    private ShardedFileStore<YamlConfiguration> shards;
 
-    public YAMLDatabase(Plugin plugin, File file, LoggingService logger, TaskService taskService) {
-        super(plugin, logger, taskService);
-        this.file = file;
+    public YAMLDatabase(Plugin plugin, File file, FileDatabaseConfig config, LoggingService logger,
+                        TaskService taskService, DatabaseExecutor executor) {
+        super(plugin, DatabaseType.YAML, file, config, logger, taskService, executor);
     }
 
     @Override
@@ -29,17 +41,20 @@ public class YAMLDatabase extends AbstractDatabase {
 
     @Override
     public CompletableFuture<Void> connect() {
-        return executeAsyncVoid(() -> {
+        return executeLifecycle(() -> {
             try {
-                if (!file.exists()) {
-                    File parent = file.getParentFile();
-                    if (parent != null && !parent.exists()) {
-                        parent.mkdirs();
-                    }
-                    file.createNewFile();
+                if (config.isSharded()) {
+                    shards = new ShardedFileStore<>(shardDirectory(), ".yml", config.getShards(), logger,
+                            this::readBucket, this::writeBucket);
+                    openShards();
+                    connected = true;
+                    logger.debug("Connected to sharded YAML database:", file.getName(), "- Shards:", config.getShards());
+                    return;
                 }
 
-                yaml = YamlConfiguration.loadConfiguration(file);
+                prepareFile();
+
+                yaml = readBucket(file.toPath());
                 connected = true;
                 logger.debug("Connected to YAML database:", file.getName());
             } catch (IOException e) {
@@ -51,15 +66,17 @@ public class YAMLDatabase extends AbstractDatabase {
 
     @Override
     public CompletableFuture<Void> disconnect() {
-        return executeAsyncVoid(() -> {
+        return executeLifecycle(() -> {
             if (connected) {
-                // Save before disconnecting
+                // Save before disconnecting, persist also settles a pending group commit
                 try {
-                    yaml.save(file);
-                } catch (IOException e) {
+                    persist();
+                } catch (RuntimeException e) {
                     logger.error(e, "Failed to save YAML database on disconnect");
                 }
                 yaml = null;
+                shards = null;
+                dropIndex();
                 connected = false;
                 logger.debug("Disconnected from YAML database:", file.getName());
             }
@@ -68,18 +85,14 @@ public class YAMLDatabase extends AbstractDatabase {
 
     @Override
     public CompletableFuture<Void> save(String key, Object value) {
-        return executeAsyncVoid(() -> {
+        return durable(executeAsync(() -> {
             if (!connected) {
                 throw new IllegalStateException("Not connected to database");
             }
-            yaml.set(key, value);
-            try {
-                yaml.save(file);
-            } catch (IOException e) {
-                logger.error(e, "Failed to save YAML data");
-                throw new RuntimeException(e);
-            }
-        });
+            store(key, value);
+            reindex(key, value);
+            return markDirty();
+        }));
     }
 
     @Override
@@ -88,7 +101,7 @@ public class YAMLDatabase extends AbstractDatabase {
             if (!connected) {
                 throw new IllegalStateException("Not connected to database");
             }
-            Object value = yaml.get(key);
+            Object value = shards != null && isTopLevel(key) ? loadTopLevel(key) : bucket(key).get(key);
             if (value == null) {
                 return null;
             }
@@ -102,24 +115,25 @@ public class YAMLDatabase extends AbstractDatabase {
             if (!connected) {
                 throw new IllegalStateException("Not connected to database");
             }
-            return yaml.contains(key);
+            for (YamlConfiguration bucket : holders(key)) {
+                if (bucket.contains(key)) {
+                    return true;
+                }
+            }
+            return false;
         });
     }
 
     @Override
     public CompletableFuture<Void> delete(String key) {
-        return executeAsyncVoid(() -> {
+        return durable(executeAsync(() -> {
             if (!connected) {
                 throw new IllegalStateException("Not connected to database");
             }
-            yaml.set(key, null);
-            try {
-                yaml.save(file);
-            } catch (IOException e) {
-                logger.error(e, "Failed to save YAML after delete");
-                throw new RuntimeException(e);
-            }
-        });
+            store(key, null);
+            reindex(key, null);
+            return markDirty();
+        }));
     }
 
     @Override
@@ -128,7 +142,179 @@ public class YAMLDatabase extends AbstractDatabase {
             if (!connected) {
                 throw new IllegalStateException("Not connected to database");
             }
-            return new ArrayList<>(yaml.getKeys(false));
+            if (shards == null) {
+                return new ArrayList<>(yaml.getKeys(false));
+            }
+
+            // A top-level section is spread over every bucket holding one of its children
+            Set<String> keys = new LinkedHashSet<>();
+            for (YamlConfiguration bucket : shards.all()) {
+                keys.addAll(bucket.getKeys(false));
+            }
+            return new ArrayList<>(keys);
         });
     }
-}
\ No newline at end of file
+
+    @Override
+    protected void writeToFile() throws IOException {
+        if (shards != null) {
+            shards.flush(config.isFsync());
+            return;
+        }
+        writeBucket(file.toPath(), yaml, config.isFsync());
+    }
+
+    // The sorted index holds full leaf paths, so prefix lookups reach into nested sections
+    @Override
+    protected List<String> indexKeys() throws IOException {
+        List<YamlConfiguration> buckets = shards != null ? shards.all() : List.of(yaml);
+        List<String> paths = new ArrayList<>();
+        for (YamlConfiguration bucket : buckets) {
+            for (String path : bucket.getKeys(true)) {
+                if (!bucket.isConfigurationSection(path)) {
+                    paths.add(path);
+                }
+            }
+        }
+        return paths;
+    }
+
+    private void reindex(String key, Object value) {
+        // Setting a path replaces everything below it and turns leaf parents into sections
+        indexRemove(key);
+        indexRemovePrefix(key + ".");
+        for (int i = key.indexOf('.'); i > 0; i = key.indexOf('.', i + 1)) {
+            indexRemove(key.substring(0, i));
+        }
+
+        if (value instanceof Map<?, ?> || value instanceof ConfigurationSection) {
+            dropIndex();
+        } else if (value != null) {
+            indexAdd(key);
+        }
+    }
+
+    private YamlConfiguration bucket(String key) throws IOException {
+        return shards != null ? shards.bucket(route(key)) : yaml;
+    }
+
+    /**
+     * Keys are routed by their first two segments, so {@code player.<uuid>.*} spreads over
+     * the buckets while each player's section stays in one file. Top-level sections can
+     * therefore span buckets and are read, replaced and deleted across all of them.
+     */
+    private String route(String key) {
+        int first = key.indexOf('.');
+        int second = first < 0 ? -1 : key.indexOf('.', first + 1);
+        return second < 0 ? key : key.substring(0, second);
+    }
+
+    private boolean isTopLevel(String key) {
+        return key.indexOf('.') < 0;
+    }
+
+    private List<YamlConfiguration> holders(String key) throws IOException {
+        return shards != null && isTopLevel(key) ? shards.all() : List.of(bucket(key));
+    }
+
+    private void store(String key, Object value) throws IOException {
+        if (shards == null) {
+            yaml.set(key, value);
+            return;
+        }
+
+        if (isTopLevel(key)) {
+            for (int i = 0; i < shards.count(); i++) {
+                YamlConfiguration bucket = shards.bucket(i);
+                if (bucket.contains(key)) {
+                    bucket.set(key, null);
+                    shards.markDirty(i);
+                }
+            }
+        } else if (bucket(key).contains(key)) {
+            bucket(key).set(key, null);
+            shards.markDirty(route(key));
+        }
+        // Setting a nested key turns a top-level value into a section, as in a single file
+        String top = key.substring(0, isTopLevel(key) ? key.length() : key.indexOf('.'));
+        YamlConfiguration parent = bucket(top);
+        if (!top.equals(key) && parent.contains(top) && !parent.isConfigurationSection(top)) {
+            parent.set(top, null);
+            shards.markDirty(top);
+        }
+        if (value == null) {
+            return;
+        }
+
+        YamlConfiguration staged = new YamlConfiguration();
+        staged.set(key, value);
+        if (!staged.isConfigurationSection(key)) {
+            bucket(key).set(key, value);
+            shards.markDirty(route(key));
+            return;
+        }
+        for (String path : staged.getKeys(true)) {
+            if (!staged.isConfigurationSection(path)) {
+                bucket(path).set(path, staged.get(path));
+                shards.markDirty(route(path));
+            }
+        }
+    }
+
+    private Object loadTopLevel(String key) throws IOException {
+        YamlConfiguration merged = null;
+        for (YamlConfiguration bucket : shards.all()) {
+            if (!bucket.contains(key)) {
+                continue;
+            }
+            if (!bucket.isConfigurationSection(key)) {
+                return bucket.get(key);
+            }
+
+            if (merged == null) {
+                merged = new YamlConfiguration();
+            }
+            ConfigurationSection section = bucket.getConfigurationSection(key);
+            for (String path : section.getKeys(true)) {
+                if (!section.isConfigurationSection(path)) {
+                    merged.set(key + "." + path, section.get(path));
+                }
+            }
+        }
+        return merged != null ? merged.get(key) : null;
+    }
+
+    // Keyed on the source file still being there, so a migration interrupted by a crash is redone
+    private void openShards() throws IOException {
+        shards.open();
+        if (!file.exists() || file.length() == 0) {
+            return;
+        }
+
+        YamlConfiguration existing = readBucket(file.toPath());
+        for (String path : existing.getKeys(true)) {
+            if (!existing.isConfigurationSection(path)) {
+                bucket(path).set(path, existing.get(path));
+                shards.markDirty(route(path));
+            }
+        }
+        shards.flush(true);
+        Files.move(file.toPath(), file.toPath().resolveSibling(file.getName() + ".unsharded"),
+                StandardCopyOption.REPLACE_EXISTING);
+        logger.info("Migrated", existing.getKeys(false).size(), "section(s) from", file.getName(), "into", config.getShards(), "shards");
+    }
+
+    private YamlConfiguration readBucket(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return new YamlConfiguration();
+        }
+        try (Reader reader = new InputStreamReader(readData(path), StandardCharsets.UTF_8)) {
+            return YamlConfiguration.loadConfiguration(reader);
+        }
+    }
+
+    private void writeBucket(Path path, YamlConfiguration bucket, boolean fsync) throws IOException {
+        byte[] content = bucket.saveToString().getBytes(StandardCharsets.UTF_8);
+        writeData(path, fsync, out -> out.write(content));
+    }
+}
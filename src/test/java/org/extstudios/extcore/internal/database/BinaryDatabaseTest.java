@@ -0,0 +1,140 @@
+package org.extstudios.extcore.internal.database;
+
+import org.extstudios.extcore.api.database.ExecutorConfig;
+import org.extstudios.extcore.api.database.FileDatabaseConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BinaryDatabaseTest {
+
+    @TempDir
+    Path directory;
+
+    private final TestLogger logger = new TestLogger();
+    private BinaryDatabase database;
+
+    @AfterEach
+    void close() {
+        if (database != null) {
+            database.disconnect().join();
+        }
+    }
+
+    @Test
+    void reopensWithoutRebuildAfterTheIndexGrew() {
+        open();
+        // Well past the initial 1024 slots, so the index is rehashed in place more than once
+        for (int i = 0; i < 3000; i++) {
+            database.save("key-" + i, i).join();
+        }
+        reopen();
+
+        assertEquals(3000, database.getKeys().join().size());
+        for (int i = 0; i < 3000; i += 97) {
+            assertEquals(i, database.load("key-" + i, Integer.class).join());
+        }
+        assertEquals(0, rebuildWarnings(), "A cleanly closed index must be reused");
+    }
+
+    @Test
+    void rebuildsAnIndexWithoutValidMagic() throws IOException {
+        open();
+        database.save("alpha", "a").join();
+        database.save("beta", "b").join();
+        database.disconnect().join();
+
+        try (FileChannel channel = FileChannel.open(indexFile().toPath(), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(4), 0);
+        }
+        open();
+
+        assertEquals(1, rebuildWarnings());
+        assertEquals("a", database.load("alpha", String.class).join());
+        assertEquals("b", database.load("beta", String.class).join());
+    }
+
+    @Test
+    void rebuildsAStaleIndex() throws IOException {
+        open();
+        database.save("alpha", "a").join();
+        database.disconnect().join();
+        Path stale = directory.resolve("stale.idx");
+        Files.copy(indexFile().toPath(), stale);
+
+        open();
+        database.save("alpha", "changed").join();
+        for (int i = 0; i < 2000; i++) {
+            database.save("key-" + i, i).join();
+        }
+        database.disconnect().join();
+
+        // As if the process died before the grown index reached the disk
+        Files.copy(stale, indexFile().toPath(), StandardCopyOption.REPLACE_EXISTING);
+        open();
+
+        assertEquals(1, rebuildWarnings());
+        assertEquals("changed", database.load("alpha", String.class).join());
+        assertEquals(1999, database.load("key-1999", Integer.class).join());
+        assertEquals(2001, database.getKeys().join().size());
+    }
+
+    @Test
+    void compactionKeepsLiveValues() {
+        open();
+        String large = "x".repeat(4096);
+        database.save("kept", "small").join();
+        database.save("deleted", "gone").join();
+        database.delete("deleted").join();
+        // Enough overwritten bytes to pass the compaction threshold several times
+        for (int i = 0; i < 100; i++) {
+            database.save("large", large + i).join();
+        }
+
+        assertFalse(Files.exists(directory.resolve("data.bin.compact")));
+        assertEquals(large + 99, database.load("large", String.class).join());
+        assertEquals("small", database.load("kept", String.class).join());
+        assertNull(database.load("deleted", String.class).join());
+
+        reopen();
+        assertEquals(large + 99, database.load("large", String.class).join());
+        assertEquals("small", database.load("kept", String.class).join());
+        assertNull(database.load("deleted", String.class).join());
+        assertEquals(2, database.getKeys().join().size());
+        assertEquals(0, rebuildWarnings());
+        assertTrue(logger.errors.isEmpty(), "Unexpected errors: " + logger.errors);
+    }
+
+    private void open() {
+        database = new BinaryDatabase(null, directory.resolve("data.bin").toFile(), indexFile(),
+                FileDatabaseConfig.defaults(), logger, null, new DatabaseExecutor("Binary-test", 1, new ExecutorConfig()));
+        database.connect().join();
+    }
+
+    private void reopen() {
+        database.disconnect().join();
+        open();
+    }
+
+    private File indexFile() {
+        return directory.resolve("data.idx").toFile();
+    }
+
+    private long rebuildWarnings() {
+        return logger.warnings.stream().filter(warning -> warning.startsWith("Rebuilding binary index")).count();
+    }
+}
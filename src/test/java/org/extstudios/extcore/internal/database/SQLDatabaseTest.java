@@ -0,0 +1,53 @@
+package org.extstudios.extcore.internal.database;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SQLDatabaseTest {
+
+    @Test
+    void readsMayGoToReplicas() {
+        for (String sql : List.of(
+                "SELECT * FROM players WHERE id = ?",
+                "  select name from players",
+                "WITH top AS (SELECT id FROM players ORDER BY coins DESC LIMIT 10) SELECT * FROM top",
+                "SELECT id FROM players WHERE note = 'insert into audit'")) {
+            assertTrue(SQLDatabase.isReadOnlyQuery(sql), sql);
+        }
+    }
+
+    @Test
+    void writingStatementsStayOnThePrimary() {
+        // streamQuery and exportTo send these to the primary, outside the read-only cursor transaction
+        for (String sql : List.of(
+                "INSERT INTO players (id) VALUES (?) RETURNING id",
+                "UPDATE players SET coins = coins + 1 RETURNING coins",
+                "DELETE FROM players WHERE id = ? RETURNING *",
+                "WITH moved AS (DELETE FROM inbox RETURNING *) INSERT INTO archive SELECT * FROM moved",
+                "WITH moved AS (DELETE FROM inbox RETURNING *) SELECT * FROM moved",
+                "SELECT * FROM players WHERE id = ? FOR UPDATE",
+                "SELECT * INTO backup FROM players",
+                "CALL refresh_rankings()")) {
+            assertFalse(SQLDatabase.isReadOnlyQuery(sql), sql);
+        }
+    }
+
+    @Test
+    void writesPinTheTablesTheirFollowUpReadsUse() {
+        // A write through streamQuery or exportTo pins the tables it names, reads of them stay on the primary
+        List<List<String>> pairs = List.of(
+                List.of("UPDATE `Players` SET coins = 1 RETURNING id", "SELECT * FROM players WHERE id = ?"),
+                List.of("INSERT INTO public.players (id) VALUES (?) RETURNING id", "SELECT p.id FROM players p"),
+                List.of("WITH moved AS (DELETE FROM inbox RETURNING *) INSERT INTO archive SELECT * FROM moved",
+                        "SELECT count(*) FROM archive a JOIN players p ON a.owner = p.id"));
+        for (List<String> pair : pairs) {
+            assertFalse(Collections.disjoint(QueryResultCache.parseTables(pair.get(0)),
+                    QueryResultCache.parseTables(pair.get(1))), pair.toString());
+        }
+    }
+}
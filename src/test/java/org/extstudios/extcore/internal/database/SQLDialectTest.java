@@ -0,0 +1,59 @@
+package org.extstudios.extcore.internal.database;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SQLDialectTest {
+
+    private static final List<String> COLUMNS = List.of("id", "name", "coins");
+    private static final List<String> KEY = List.of("id");
+
+    @Test
+    void mysqlUpsertUsesValuesSoMariaDbAccepts() {
+        assertEquals("INSERT INTO `players` (`id`, `name`, `coins`) VALUES (?, ?, ?), (?, ?, ?)"
+                        + " ON DUPLICATE KEY UPDATE `name` = VALUES(`name`), `coins` = VALUES(`coins`)",
+                SQLDialect.MYSQL.upsert("players", COLUMNS, KEY, 2));
+    }
+
+    @Test
+    void mysqlKeyOnlyUpsertIsANoOpUpdate() {
+        assertEquals("INSERT INTO `players` (`id`) VALUES (?) ON DUPLICATE KEY UPDATE `id` = `id`",
+                SQLDialect.MYSQL.upsert("players", KEY, KEY, 1));
+    }
+
+    @Test
+    void postgresqlAndSqliteUpsertUseExcluded() {
+        String expected = "INSERT INTO \"players\" (\"id\", \"name\", \"coins\") VALUES (?, ?, ?)"
+                + " ON CONFLICT (\"id\") DO UPDATE SET \"name\" = excluded.\"name\", \"coins\" = excluded.\"coins\"";
+        assertEquals(expected, SQLDialect.POSTGRESQL.upsert("players", COLUMNS, KEY, 1));
+        assertEquals(expected, SQLDialect.SQLITE.upsert("players", COLUMNS, KEY, 1));
+    }
+
+    @Test
+    void keyOnlyConflictDoesNothing() {
+        assertEquals("INSERT INTO \"players\" (\"id\") VALUES (?) ON CONFLICT (\"id\") DO NOTHING",
+                SQLDialect.SQLITE.upsert("players", KEY, KEY, 1));
+    }
+
+    @Test
+    void rejectsKeyColumnsOutsideTheColumns() {
+        assertThrows(IllegalArgumentException.class,
+                () -> SQLDialect.SQLITE.upsert("players", List.of("name"), KEY, 1));
+        assertThrows(IllegalArgumentException.class,
+                () -> SQLDialect.SQLITE.upsert("players", COLUMNS, List.of(), 1));
+    }
+
+    @Test
+    void upsertWritesTheTableItsCacheInvalidationNames() {
+        // upsertAll invalidates and pins QueryResultCache.tableName(table), reads find it by parsing their SQL
+        for (SQLDialect dialect : SQLDialect.values()) {
+            assertEquals(Set.of(QueryResultCache.tableName("Players")),
+                    QueryResultCache.parseTables(dialect.upsert("Players", COLUMNS, KEY, 3)), dialect.name());
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package org.extstudios.extcore.internal.database;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+class SQLiteWriterTest {
+
+    private final Map<String, AtomicInteger> calls = new ConcurrentHashMap<>();
+    private final SQLiteWriter writer = new SQLiteWriter("SQLite-test", dataSource(), new TestLogger(), true, 8);
+    private final ExecutorService callers = Executors.newVirtualThreadPerTaskExecutor();
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @AfterEach
+    void close() {
+        release.countDown();
+        callers.shutdownNow();
+    }
+
+    @Test
+    void failedWriteInAGroupOnlyFailsItsOwnCaller() throws Exception {
+        Future<Object> blocker = submit(holdWriter(), true, 0);
+        Future<Object> first = submit(conn -> 1, true, 1);
+        Future<Object> failing = submit(conn -> {
+            throw new SQLException("constraint failed");
+        }, true, 2);
+        Future<Object> third = submit(conn -> 3, true, 3);
+        release.countDown();
+
+        assertEquals(0, blocker.get(5, TimeUnit.SECONDS));
+        assertEquals(1, first.get(5, TimeUnit.SECONDS));
+        assertEquals(3, third.get(5, TimeUnit.SECONDS));
+        ExecutionException error = assertThrows(ExecutionException.class, () -> failing.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(SQLException.class, error.getCause());
+
+        assertEquals(1, count("commit"));
+        assertEquals(1, count("rollback/1"));
+        assertEquals(0, count("rollback/0"));
+    }
+
+    @Test
+    void errorInAGroupFailsTheGroupAndKeepsDraining() throws Exception {
+        Future<Object> blocker = submit(holdWriter(), true, 0);
+        Future<Object> first = submit(conn -> 1, true, 1);
+        Future<Object> fatal = submit(conn -> {
+            throw new FatalError();
+        }, true, 2);
+        // Not groupable, so it stays queued behind the group that dies
+        Future<Object> queued = submit(conn -> 4, false, 3);
+        release.countDown();
+
+        assertEquals(0, blocker.get(5, TimeUnit.SECONDS));
+        ExecutionException firstError = assertThrows(ExecutionException.class, () -> first.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(FatalError.class, firstError.getCause());
+        ExecutionException fatalError = assertThrows(ExecutionException.class, () -> fatal.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(FatalError.class, fatalError.getCause());
+        assertEquals(1, count("rollback/0"));
+
+        assertEquals(4, queued.get(5, TimeUnit.SECONDS));
+        Object next = assertTimeoutPreemptively(Duration.ofSeconds(5), () -> writer.execute(conn -> (Object) 5, true));
+        assertEquals(5, next);
+        assertEquals(0, writer.getQueueDepth());
+    }
+
+    // Keeps the writer busy until released, so the next writes queue up into one group
+    private SQLDatabase.SQLWork<Object> holdWriter() {
+        return conn -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException(e);
+            }
+            return 0;
+        };
+    }
+
+    // Submits from its own thread, since callers block, and waits until the writer has taken it
+    private Future<Object> submit(SQLDatabase.SQLWork<Object> work, boolean groupable, int queueDepth)
+            throws InterruptedException {
+        Future<Object> future = callers.submit(() -> writer.execute(work, groupable));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        // The first write is drained straight away, the others queue up behind it
+        while (!(queueDepth == 0 ? count("getConnection") > 0 : writer.getQueueDepth() >= queueDepth)
+                && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        return future;
+    }
+
+    private int count(String call) {
+        AtomicInteger count = calls.get(call);
+        return count == null ? 0 : count.get();
+    }
+
+    private DataSource dataSource() {
+        Savepoint savepoint = fake(Savepoint.class, null);
+        Connection connection = fake(Connection.class, savepoint);
+        return fake(DataSource.class, connection);
+    }
+
+    // Records every call by name and answers getConnection and setSavepoint with result
+    private <T> T fake(Class<T> type, Object result) {
+        return type.cast(Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> {
+                    String name = method.getName();
+                    if (name.equals("rollback")) {
+                        name += "/" + (args == null ? 0 : args.length);
+                    }
+                    record(name);
+                    if (name.equals("getConnection") || name.equals("setSavepoint")) {
+                        return result;
+                    }
+                    return defaultValue(method.getReturnType());
+                }));
+    }
+
+    private void record(String call) {
+        calls.computeIfAbsent(call, k -> new AtomicInteger()).incrementAndGet();
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) {
+            return false;
+        }
+        if (type == int.class) {
+            return 0;
+        }
+        if (type == long.class) {
+            return 0L;
+        }
+        return null;
+    }
+
+    private static final class FatalError extends Error {
+    }
+}
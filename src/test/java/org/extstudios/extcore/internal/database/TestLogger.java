@@ -0,0 +1,77 @@
+package org.extstudios.extcore.internal.database;
+
+import org.extstudios.extcore.api.LoggingService;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Keeps warnings and errors in memory so tests can assert on them without a server.
+ */
+final class TestLogger implements LoggingService {
+
+    final List<String> warnings = new CopyOnWriteArrayList<>();
+    final List<String> errors = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void info(Object... parts) {
+    }
+
+    @Override
+    public void warn(Object... parts) {
+        warnings.add(join(parts));
+    }
+
+    @Override
+    public void warn(Throwable throwable, Object... message) {
+        warnings.add(join(message));
+    }
+
+    @Override
+    public void error(Object... parts) {
+        errors.add(join(parts));
+    }
+
+    @Override
+    public void error(Throwable throwable, Object... message) {
+        errors.add(join(message));
+    }
+
+    @Override
+    public void debug(Object... parts) {
+    }
+
+    @Override
+    public boolean isDebugEnabled() {
+        return false;
+    }
+
+    @Override
+    public void setDebugEnabled(boolean enabled) {
+    }
+
+    @Override
+    public void setPrefix(String prefix) {
+    }
+
+    @Override
+    public LoggingService withPrefix(String prefix) {
+        return this;
+    }
+
+    @Override
+    public void seperator() {
+    }
+
+    @Override
+    public void header(String title) {
+    }
+
+    private static String join(Object... parts) {
+        StringBuilder builder = new StringBuilder();
+        for (Object part : parts) {
+            builder.append(builder.isEmpty() ? "" : " ").append(part);
+        }
+        return builder.toString();
+    }
+}
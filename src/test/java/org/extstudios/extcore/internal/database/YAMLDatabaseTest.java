@@ -0,0 +1,90 @@
+package org.extstudios.extcore.internal.database;
+
+import org.extstudios.extcore.api.database.ExecutorConfig;
+import org.extstudios.extcore.api.database.FileDatabaseConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class YAMLDatabaseTest {
+
+    @TempDir
+    Path directory;
+
+    private YAMLDatabase database;
+
+    @AfterEach
+    void close() {
+        if (database != null) {
+            database.disconnect().join();
+        }
+    }
+
+    @Test
+    void prefixLookupsReachIntoNestedSections() {
+        open(FileDatabaseConfig.defaults());
+        savePlayers();
+
+        assertEquals(List.of("players.alice.coins", "players.alice.name", "players.bob.coins"),
+                database.getKeys("players.").join());
+        assertEquals(List.of("players.alice.coins", "players.alice.name"), database.getKeys("players.alice.").join());
+        assertEquals(List.of("players.bob.coins"), database.scan("players.b", "players.c", 10).join());
+        // getKeys() keeps listing the top-level sections only
+        assertEquals(List.of("players", "settings"), database.getKeys().join());
+    }
+
+    @Test
+    void savingOverAPathReplacesTheLeavesBelowAndAboveIt() {
+        open(FileDatabaseConfig.defaults());
+        savePlayers();
+
+        database.save("players.alice", "banned").join();
+        assertEquals(List.of("players.alice", "players.bob.coins"), database.getKeys("players.").join());
+
+        database.save("players.alice.coins", "1").join();
+        assertEquals(List.of("players.alice.coins", "players.bob.coins"), database.getKeys("players.").join());
+
+        database.delete("players.alice").join();
+        assertEquals(List.of("players.bob.coins"), database.getKeys("players.").join());
+    }
+
+    @Test
+    void mapValuesAreIndexedByTheirLeaves() {
+        open(FileDatabaseConfig.defaults());
+        database.save("guilds.red", Map.of("owner", "alice", "bank", Map.of("gold", "10"))).join();
+
+        assertEquals(List.of("guilds.red.bank.gold", "guilds.red.owner"), database.getKeys("guilds.").join());
+    }
+
+    @Test
+    void shardedLeafPathsSurviveAReopen() {
+        FileDatabaseConfig config = FileDatabaseConfig.defaults().setShards(4);
+        open(config);
+        savePlayers();
+        database.disconnect().join();
+
+        open(config);
+        assertEquals(List.of("players.alice.coins", "players.alice.name", "players.bob.coins"),
+                database.getKeys("players.").join());
+        assertEquals(List.of("players", "settings"), database.getKeys().join().stream().sorted().toList());
+    }
+
+    private void savePlayers() {
+        database.save("players.alice.coins", "5").join();
+        database.save("players.alice.name", "Alice").join();
+        database.save("players.bob.coins", "7").join();
+        database.save("settings.motd", "Welcome").join();
+    }
+
+    private void open(FileDatabaseConfig config) {
+        database = new YAMLDatabase(null, directory.resolve("data.yml").toFile(), config, new TestLogger(), null,
+                new DatabaseExecutor("YAML-test", 1, new ExecutorConfig()));
+        database.connect().join();
+    }
+}